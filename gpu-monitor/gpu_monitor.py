@@ -1,39 +1,70 @@
 #!/usr/bin/env python3
+import argparse
 import json
 import shutil
 import subprocess
 import sys
+import time
 
 
 def is_cmd_available(cmd: str) -> bool:
     return shutil.which(cmd) is not None
 
 
+NVIDIA_QUERY = [
+    "nvidia-smi",
+    "--query-gpu=index,utilization.gpu,memory.used,memory.total",
+    "--format=csv,noheader,nounits",
+]
+
+
+def parse_nvidia_line(line: str):
+    parts = [p.strip() for p in line.split(",")]
+    if len(parts) != 4:
+        return None
+    idx, util, mem_used, mem_total = parts
+    return {
+        "index": int(idx),
+        "util": float(util),
+        "mem_used": int(mem_used),
+        "mem_total": int(mem_total),
+    }
+
+
 def query_nvidia():
-    cmd = [
-        "nvidia-smi",
-        "--query-gpu=index,utilization.gpu,memory.used,memory.total",
-        "--format=csv,noheader,nounits",
-    ]
-    out = subprocess.check_output(cmd, stderr=subprocess.STDOUT).decode("utf-8")
+    out = subprocess.check_output(NVIDIA_QUERY, stderr=subprocess.STDOUT).decode("utf-8")
     lines = [l.strip() for l in out.splitlines() if l.strip()]
     gpus = []
     for line in lines:
-        parts = [p.strip() for p in line.split(",")]
-        if len(parts) != 4:
-            continue
-        idx, util, mem_used, mem_total = parts
-        gpus.append(
-            {
-                "index": int(idx),
-                "util": float(util),
-                "mem_used": int(mem_used),
-                "mem_total": int(mem_total),
-            }
-        )
+        gpu = parse_nvidia_line(line)
+        if gpu is not None:
+            gpus.append(gpu)
     return {"backend": "nvidia", "gpus": gpus}
 
 
+def stream_nvidia(loop_ms: int):
+    # nvidia-smi samples on its own; one child process for the whole session
+    gpu_count = len(query_nvidia()["gpus"])
+    if gpu_count == 0:
+        emit({"backend": "nvidia", "gpus": []})
+        return
+
+    cmd = NVIDIA_QUERY + [f"--loop-ms={loop_ms}"]
+    with subprocess.Popen(cmd, stdout=subprocess.PIPE, text=True, bufsize=1) as proc:
+        gpus = []
+        for line in proc.stdout:
+            line = line.strip()
+            if not line:
+                continue
+            gpu = parse_nvidia_line(line)
+            if gpu is None:
+                continue
+            gpus.append(gpu)
+            if len(gpus) == gpu_count:
+                emit({"backend": "nvidia", "gpus": gpus})
+                gpus = []
+
+
 def query_amd():
     cmd = ["rocm-smi", "--showuse", "--showmeminfo", "vram", "--json"]
     out = subprocess.check_output(cmd, stderr=subprocess.STDOUT).decode("utf-8")
@@ -72,20 +103,57 @@ def query_amd():
 
     return {"backend": "amd", "gpus": gpus}
 
+
+def query_once():
+    if is_cmd_available("nvidia-smi"):
+        return query_nvidia()
+    if is_cmd_available("rocm-smi"):
+        return query_amd()
+    return {"backend": "none", "gpus": []}
+
+
+def emit(result):
+    print(json.dumps(result), flush=True)
+
+
+def report_error(e: Exception):
+    if isinstance(e, subprocess.CalledProcessError):
+        message = e.output.decode("utf-8", "ignore") if e.output else str(e)
+    else:
+        message = str(e)
+    print(json.dumps({"backend": "error", "error": message}), file=sys.stderr, flush=True)
+
+
+def loop(loop_ms: int):
+    if is_cmd_available("nvidia-smi"):
+        stream_nvidia(loop_ms)
+        return
+
+    interval = loop_ms / 1000.0
+    while True:
+        started = time.monotonic()
+        try:
+            emit(query_once())
+        except Exception as e:
+            report_error(e)
+        time.sleep(max(0.0, interval - (time.monotonic() - started)))
+
+
 def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--loop-ms", type=int, default=0,
+                        help="keep running and print one JSON line every N milliseconds")
+    args = parser.parse_args()
+
     try:
-        if is_cmd_available("nvidia-smi"):
-            result = query_nvidia()
-        elif is_cmd_available("rocm-smi"):
-            result = query_amd()
+        if args.loop_ms > 0:
+            loop(args.loop_ms)
         else:
-            result = {"backend": "none", "gpus": []}
-        print(json.dumps(result))
-    except subprocess.CalledProcessError as e:
-        print(json.dumps({"backend": "error", "error": e.output.decode("utf-8", "ignore")}), file=sys.stderr)
-        sys.exit(1)
+            emit(query_once())
+    except KeyboardInterrupt:
+        pass
     except Exception as e:
-        print(json.dumps({"backend": "error", "error": str(e)}), file=sys.stderr)
+        report_error(e)
         sys.exit(1)
 
 
@@ -2,97 +2,457 @@ package de.hthoene.loralite.aitoolkit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import de.hthoene.loralite.util.CompactingOutputStream;
+import de.hthoene.loralite.util.EventBroadcaster;
+import de.hthoene.loralite.util.GpuMonitor;
+import de.hthoene.loralite.util.LogProperties;
+import de.hthoene.loralite.util.WorkflowEvent;
 import de.hthoene.loralite.util.WorkspaceProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.springframework.stereotype.Service;
 import org.zeroturnaround.exec.ProcessExecutor;
 
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class AiToolkitService {
+    private static final DateTimeFormatter JOB_ID_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS");
+    private static final long METRICS_BROADCAST_INTERVAL_MS = 1000;
+    private static final int KEPT_JOB_METRICS = 16;
+
     private final Path configFolderPath;
     private final Path logsFolderPath;
+    private final Path outputFolderPath;
     private final Path aiToolkitFolderPath;
     private final ObjectMapper yamlMapper;
+    private final TrainingQueue queue;
+    private final GpuScheduler gpuScheduler;
+    private final EventBroadcaster eventBroadcaster;
+    private final LogProperties logProperties;
+    private final DatasetPreparation datasetPreparation;
+
+    private final ExecutorService jobExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, RunningJob> runningJobs = new LinkedHashMap<>();
+    private final Map<String, TrainingMetrics> jobMetrics = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TrainingMetrics> eldest) {
+            return size() > KEPT_JOB_METRICS;
+        }
+    };
+    private volatile String sharedLogJobId;
+    private boolean archiving;
 
-    private volatile Process currentProcess;
+    private static class RunningJob {
+        private final TrainingJob job;
+        private final int device;
+        private final TrainingMetrics metrics = new TrainingMetrics();
+        private Process process;
+        private boolean cancelRequested;
+
+        private RunningJob(TrainingJob job, int device) {
+            this.job = job;
+            this.device = device;
+        }
+    }
 
-    public AiToolkitService(WorkspaceProperties workspaceProperties) {
+    public AiToolkitService(WorkspaceProperties workspaceProperties,
+                            GpuScheduler gpuScheduler,
+                            EventBroadcaster eventBroadcaster,
+                            LogProperties logProperties,
+                            DatasetPreparation datasetPreparation) {
         this.configFolderPath = workspaceProperties.getConfigsPath();
         this.logsFolderPath = workspaceProperties.getLogsPath();
+        this.outputFolderPath = workspaceProperties.getOutputPath();
         this.aiToolkitFolderPath = workspaceProperties.getAiToolkitPath();
         this.yamlMapper = new ObjectMapper(new YAMLFactory());
+        this.queue = new TrainingQueue(configFolderPath.resolve("queue.json"));
+        this.gpuScheduler = gpuScheduler;
+        this.eventBroadcaster = eventBroadcaster;
+        this.logProperties = logProperties;
+        this.datasetPreparation = datasetPreparation;
     }
 
-    public synchronized Path train(JobConfiguration config) throws IOException {
-        if (currentProcess != null && currentProcess.isAlive()) {
-            throw new IllegalStateException("A training process is already running");
+    @PostConstruct
+    void resumeQueue() {
+        queue.list().stream()
+                .filter(job -> job.getStatus() == TrainingJob.Status.RUNNING)
+                .forEach(job -> {
+                    log.warn("Training job {} was interrupted by a restart", job.getId());
+                    job.setStatus(TrainingJob.Status.FAILED);
+                    job.setFinishedAt(Instant.now());
+                });
+        queue.save();
+
+        // jobs wait for the first GPU sample to be pinned, retry once the device list is known
+        eventBroadcaster.register(event -> {
+            if (event instanceof WorkflowEvent.GpuStatsUpdated && queue.queuedCount() > 0) {
+                dispatchNext();
+            }
+        });
+        CompletableFuture.delayedExecutor(GpuMonitor.FIRST_SAMPLE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS, jobExecutor)
+                .execute(this::dispatchNext);
+        dispatchNext();
+    }
+
+    public synchronized TrainingJob enqueue(JobConfiguration config, int priority) throws IOException {
+        if (archiving) {
+            throw new IOException("The workflow is being archived, queue the job once it has finished");
         }
+        String id = LocalDateTime.now().format(JOB_ID_FORMATTER);
 
-        Path latestConfigDir = configFolderPath.resolve("latest");
-        Files.createDirectories(latestConfigDir);
-        Path configFile = latestConfigDir.resolve("train.yaml");
-        yamlMapper.writeValue(configFile.toFile(), config);
+        Path jobConfigDir = configFolderPath.resolve("latest").resolve(id);
+        Files.createDirectories(jobConfigDir);
+        Path configFile = jobConfigDir.resolve("train.yaml");
 
-        Files.createDirectories(logsFolderPath);
-        Path logFile = logsFolderPath.resolve("latest.txt");
+        Path jobLogDir = logsFolderPath.resolve("latest");
+        Files.createDirectories(jobLogDir);
+        Path logFile = jobLogDir.resolve(id + ".txt");
 
-        CompletableFuture
-                .supplyAsync(() -> {
-                    try (FileOutputStream logOut = new FileOutputStream(logFile.toFile(), true)) {
-                        Process process = new ProcessExecutor()
-                                .directory(aiToolkitFolderPath.toFile())
-                                .command("python", "run.py", configFile.toAbsolutePath().toString())
-                                .redirectOutput(logOut)
-                                .redirectError(logOut)
-                                .readOutput(false)
-                                .destroyOnExit()
-                                .start()
-                                .getProcess();
+        // every job trains into its own folder, ai-toolkit names the output after config.name inside it
+        Path trainingFolder = outputFolderPath.resolve("latest").resolve(id);
+        String name = config.getConfig() != null && config.getConfig().getName() != null
+                ? config.getConfig().getName()
+                : id;
+        yamlMapper.writeValue(configFile.toFile(), withJobFolders(config, name, trainingFolder));
 
-                        synchronized (AiToolkitService.this) {
-                            currentProcess = process;
-                        }
+        TrainingJob job = new TrainingJob();
+        job.setId(id);
+        job.setName(name);
+        job.setPriority(priority);
+        job.setStatus(TrainingJob.Status.QUEUED);
+        job.setCreatedAt(Instant.now());
+        job.setConfigFile(configFile.toString());
+        job.setLogFile(logFile.toString());
+        job.setOutputFolder(trainingFolder.resolve(name).toString());
+        queue.add(job);
+        jobsChanged();
 
-                        int exitCode = process.waitFor();
+        dispatchNext();
+        return job;
+    }
 
-                        synchronized (AiToolkitService.this) {
-                            currentProcess = null;
-                        }
+    private JobConfiguration withJobFolders(JobConfiguration config, String name, Path trainingFolder) {
+        if (config.getConfig() == null || config.getConfig().getProcess() == null) {
+            return config;
+        }
+        List<JobConfiguration.ProcessItem> processes = config.getConfig().getProcess().stream()
+                .map(process -> process.toBuilder()
+                        .trainingFolder(trainingFolder.toAbsolutePath().toString())
+                        .build())
+                .toList();
 
-                        return exitCode;
-                    } catch (Exception e) {
-                        synchronized (AiToolkitService.this) {
-                            currentProcess = null;
-                        }
+        return config.toBuilder()
+                .config(config.getConfig().toBuilder()
+                        .name(name)
+                        .process(processes)
+                        .build())
+                .build();
+    }
+
+    public synchronized void dispatchNext() {
+        // the archive moves configs/latest and dataset/latest away underneath a starting job
+        if (archiving) {
+            return;
+        }
+        while (true) {
+            Optional<TrainingJob> next = queue.peekNext();
+            if (next.isEmpty()) {
+                return;
+            }
+
+            Optional<Integer> device = gpuScheduler.selectDevice(occupiedDevices());
+            if (device.isEmpty()) {
+                return;
+            }
+
+            TrainingJob job = next.get();
+            job.setStatus(TrainingJob.Status.RUNNING);
+            job.setStartedAt(Instant.now());
+            job.setGpuIndex(device.get() != GpuScheduler.UNPINNED ? device.get() : null);
+            queue.save();
+
+            RunningJob runningJob = new RunningJob(job, device.get());
+            runningJobs.put(job.getId(), runningJob);
+            jobMetrics.put(job.getId(), runningJob.metrics);
+            sharedLogJobId = job.getId();
+            log.info("Starting training job {} on device {}", job.getId(), device.get());
+            jobsChanged();
+
+            CompletableFuture
+                    .runAsync(() -> runJob(runningJob), jobExecutor)
+                    .exceptionally(ex -> {
+                        log.error("Training job {} failed", job.getId(), ex);
                         return null;
-                    }
-                })
-                .exceptionally(ex -> null);
+                    });
+        }
+    }
 
-        return logFile;
+    private Set<Integer> occupiedDevices() {
+        return runningJobs.values().stream()
+                .map(runningJob -> runningJob.device)
+                .collect(Collectors.toSet());
     }
 
-    public synchronized void cancelCurrent() {
-        if (currentProcess != null && currentProcess.isAlive()) {
-            currentProcess.destroy();
-            try {
-                if (!currentProcess.waitFor(3, java.util.concurrent.TimeUnit.SECONDS)) {
-                    currentProcess.destroyForcibly();
+    private void runJob(RunningJob runningJob) {
+        TrainingJob job = runningJob.job;
+        Integer exitCode = null;
+        Path configFile = Path.of(job.getConfigFile());
+
+        try (OutputStream logOut = openLogStream(runningJob)) {
+            if (!Files.exists(configFile)) {
+                throw new IOException("Configuration file no longer exists: " + configFile);
+            }
+
+            JobConfiguration config = yamlMapper.readValue(configFile.toFile(), JobConfiguration.class);
+            List<DatasetPreparation.PreparedDataset> prepared = prepareDatasets(job, config, logOut);
+
+            Process process = new ProcessExecutor()
+                    .directory(aiToolkitFolderPath.toFile())
+                    .command("python", "run.py", configFile.toAbsolutePath().toString())
+                    .environment(gpuScheduler.environmentFor(runningJob.device))
+                    .redirectOutput(logOut)
+                    .redirectError(logOut)
+                    .readOutput(false)
+                    .destroyOnExit()
+                    .start()
+                    .getProcess();
+
+            synchronized (this) {
+                runningJob.process = process;
+                if (runningJob.cancelRequested) {
+                    process.destroy();
                 }
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
-            } finally {
-                currentProcess = null;
             }
+
+            exitCode = process.waitFor();
+            if (exitCode == 0 && !runningJob.cancelRequested) {
+                datasetPreparation.retain(prepared);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Could not run training job {}", job.getId(), e);
+        } finally {
+            complete(runningJob, exitCode);
         }
     }
 
+    private List<DatasetPreparation.PreparedDataset> prepareDatasets(TrainingJob job,
+                                                                     JobConfiguration config,
+                                                                     OutputStream logOut) {
+        try {
+            List<DatasetPreparation.PreparedDataset> prepared = datasetPreparation.prepare(config);
+            for (DatasetPreparation.PreparedDataset dataset : prepared) {
+                for (String line : dataset.report()) {
+                    log.info("Training job {}: {}", job.getId(), line);
+                    logOut.write(("[loralite] " + line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            logOut.flush();
+            return prepared;
+        } catch (IOException e) {
+            // a failed warmup only costs the caching time, so the run still starts
+            log.warn("Could not prepare datasets for training job {}", job.getId(), e);
+            return List.of();
+        }
+    }
+
+    private OutputStream openLogStream(RunningJob runningJob) throws IOException {
+        TrainingJob job = runningJob.job;
+        OutputStream jobLog = new FileOutputStream(job.getLogFile(), true);
+        // latest.txt is tailed by the live log views, so only the kept per-job log is compacted
+        if (logProperties.isCompactOnDisk()) {
+            jobLog = new CompactingOutputStream(jobLog, logProperties.getProgressIntervalMs());
+        }
+        OutputStream sharedLog = new FileOutputStream(logsFolderPath.resolve("latest.txt").toFile(), true);
+        // latest.txt follows the most recently started job, concurrent jobs only write their own log
+        sharedLog = new FilterOutputStream(sharedLog) {
+            @Override
+            public void write(int b) throws IOException {
+                if (job.getId().equals(sharedLogJobId)) {
+                    out.write(b);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (job.getId().equals(sharedLogJobId)) {
+                    out.write(b, off, len);
+                }
+            }
+        };
+        // fast runs advance several steps per second, the views only need to repaint about once a second
+        AtomicLong lastBroadcast = new AtomicLong();
+        OutputStream metricsParser = new TrainingMetricsParser(runningJob.metrics, () -> {
+            long now = System.currentTimeMillis();
+            long last = lastBroadcast.get();
+            if (now - last >= METRICS_BROADCAST_INTERVAL_MS && lastBroadcast.compareAndSet(last, now)) {
+                eventBroadcaster.broadcast(new WorkflowEvent.MetricsUpdated(job.getId()));
+            }
+        });
+        return new TeeOutputStream(new TeeOutputStream(jobLog, sharedLog), metricsParser);
+    }
+
+    private synchronized void complete(RunningJob runningJob, Integer exitCode) {
+        TrainingJob job = runningJob.job;
+        if (runningJob.cancelRequested) {
+            job.setStatus(TrainingJob.Status.CANCELLED);
+        } else if (exitCode != null && exitCode == 0) {
+            job.setStatus(TrainingJob.Status.FINISHED);
+        } else {
+            job.setStatus(TrainingJob.Status.FAILED);
+        }
+        job.setExitCode(exitCode);
+        job.setFinishedAt(Instant.now());
+        queue.save();
+
+        log.info("Training job {} ended with status {}", job.getId(), job.getStatus());
+
+        runningJobs.remove(job.getId());
+        if (job.getId().equals(sharedLogJobId)) {
+            sharedLogJobId = runningJobs.isEmpty() ? null : List.copyOf(runningJobs.keySet()).getLast();
+        }
+        jobsChanged();
+        eventBroadcaster.broadcast(new WorkflowEvent.MetricsUpdated(job.getId()));
+        dispatchNext();
+    }
+
+    private void jobsChanged() {
+        eventBroadcaster.broadcast(new WorkflowEvent.JobsChanged());
+    }
+
+    public void cancelAll() {
+        List<String> jobIds;
+        synchronized (this) {
+            jobIds = List.copyOf(runningJobs.keySet());
+        }
+        jobIds.forEach(this::cancel);
+    }
+
+    public void cancel(String jobId) {
+        Process process;
+        synchronized (this) {
+            RunningJob runningJob = runningJobs.get(jobId);
+            if (runningJob == null) {
+                return;
+            }
+            runningJob.cancelRequested = true;
+            process = runningJob.process;
+        }
+
+        // the grace period runs off the caller's thread and outside the monitor the UI reads through
+        if (process != null && process.isAlive()) {
+            process.destroy();
+            jobExecutor.execute(() -> {
+                try {
+                    if (!process.waitFor(3, TimeUnit.SECONDS)) {
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    public boolean removeQueued(String jobId) {
+        boolean removed = queue.remove(jobId);
+        if (removed) {
+            jobsChanged();
+        }
+        return removed;
+    }
+
+    public void clearFinishedJobs() {
+        queue.clearFinished();
+        jobsChanged();
+    }
+
+    public List<TrainingJob> getJobs() {
+        return queue.list();
+    }
+
+    public int getQueuedCount() {
+        return queue.queuedCount();
+    }
+
+    public synchronized List<TrainingJob> getRunningJobs() {
+        return runningJobs.values().stream()
+                .map(runningJob -> runningJob.job)
+                .toList();
+    }
+
+    public synchronized Optional<TrainingJob> getJobOnDevice(int device) {
+        return runningJobs.values().stream()
+                .filter(runningJob -> runningJob.device == device || runningJob.device == GpuScheduler.UNPINNED)
+                .map(runningJob -> runningJob.job)
+                .findFirst();
+    }
+
+    public synchronized Optional<TrainingMetrics> getMetrics(String jobId) {
+        return Optional.ofNullable(jobMetrics.get(jobId));
+    }
+
+    public synchronized Optional<String> getLatestMetricsJobId() {
+        if (!runningJobs.isEmpty()) {
+            return Optional.of(List.copyOf(runningJobs.keySet()).getLast());
+        }
+        return jobMetrics.isEmpty() ? Optional.empty() : Optional.of(List.copyOf(jobMetrics.keySet()).getLast());
+    }
+
+    public Path getOutputFolder() {
+        TrainingJob job = queue.list().stream()
+                .filter(j -> j.getStartedAt() != null)
+                .max(Comparator.comparing(TrainingJob::getStartedAt))
+                .orElse(null);
+        if (job != null && Files.isDirectory(Path.of(job.getOutputFolder()))) {
+            return Path.of(job.getOutputFolder());
+        }
+        return outputFolderPath.resolve("latest");
+    }
+
+    public synchronized void beginArchive() {
+        if (!runningJobs.isEmpty()) {
+            throw new IllegalStateException("Training is still running, stop it before archiving");
+        }
+        if (queue.queuedCount() > 0) {
+            // queued jobs read their configuration from configs/latest when they start
+            throw new IllegalStateException("Training jobs are still queued, remove them before archiving");
+        }
+        archiving = true;
+    }
+
+    public synchronized void endArchive() {
+        archiving = false;
+        dispatchNext();
+    }
+
     public synchronized boolean isRunning() {
-        return currentProcess != null && currentProcess.isAlive();
+        return !runningJobs.isEmpty();
     }
 }
@@ -0,0 +1,393 @@
+package de.hthoene.loralite.aitoolkit;
+
+import de.hthoene.loralite.util.BlobStore;
+import de.hthoene.loralite.util.DatasetIndex;
+import de.hthoene.loralite.util.WorkspaceProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class DatasetPreparation {
+    // ai-toolkit writes cached latents next to the images it encodes, named <image stem>_<settings hash>
+    private static final String LATENT_CACHE_FOLDER = "_latent_cache";
+    private static final String STAMP_FILE = ".loralite-latents";
+    private static final int BUCKET_DIVISIBILITY = 64;
+    private static final int MAX_CACHED_IMAGES = 4096;
+
+    public record PreparedDataset(Path folder, String variant, Map<Path, String> imageHashes, List<String> report) {
+    }
+
+    private record Image(Path path, String hash, int width, int height) {
+        private String stem() {
+            return FilenameUtils.getBaseName(path.getFileName().toString());
+        }
+    }
+
+    private final DatasetIndex datasetIndex;
+    private final Path latentStorePath;
+
+    public DatasetPreparation(WorkspaceProperties workspaceProperties, DatasetIndex datasetIndex) {
+        this.datasetIndex = datasetIndex;
+        this.latentStorePath = workspaceProperties.getLatentCachePath();
+    }
+
+    public List<PreparedDataset> prepare(JobConfiguration config) throws IOException {
+        List<PreparedDataset> prepared = new ArrayList<>();
+        for (JobConfiguration.ProcessItem process : config.getConfig().getProcess()) {
+            if (process.getDatasets() == null) {
+                continue;
+            }
+            for (JobConfiguration.Dataset dataset : process.getDatasets()) {
+                if (dataset.getFolderPath() != null && Files.isDirectory(Path.of(dataset.getFolderPath()))) {
+                    prepared.add(prepare(process, dataset));
+                }
+            }
+        }
+        return prepared;
+    }
+
+    private PreparedDataset prepare(JobConfiguration.ProcessItem process, JobConfiguration.Dataset dataset)
+            throws IOException {
+        Path folder = Path.of(dataset.getFolderPath());
+        List<Image> images = scan(folder);
+        String variant = variant(process, dataset);
+
+        List<String> report = new ArrayList<>();
+        report.add("Dataset " + folder + ": " + images.size() + " images, latent variant " + variant);
+        if (Boolean.TRUE.equals(dataset.getCacheLatentsToDisk())) {
+            report.add(warmLatentCache(images, variant));
+        }
+        int batchSize = process.getTrain() != null && process.getTrain().getBatchSize() != null
+                ? process.getTrain().getBatchSize()
+                : 1;
+        report.addAll(bucketStatistics(images, dataset.getResolution(), batchSize));
+
+        Map<Path, String> imageHashes = new HashMap<>();
+        images.forEach(image -> imageHashes.put(image.path(), image.hash()));
+        return new PreparedDataset(folder, variant, imageHashes, report);
+    }
+
+    // only called after a successful run, so every latent stamped here was written by ai-toolkit from these images
+    public void retain(List<PreparedDataset> prepared) {
+        for (PreparedDataset dataset : prepared) {
+            try {
+                retain(dataset);
+            } catch (IOException e) {
+                log.warn("Could not retain latent cache of {}", dataset.folder(), e);
+            }
+        }
+        evictOldEntries();
+    }
+
+    private void retain(PreparedDataset dataset) throws IOException {
+        for (Map.Entry<Path, List<Image>> entry : byCacheFolder(scan(dataset.folder())).entrySet()) {
+            Path cacheFolder = entry.getKey();
+            if (!Files.isDirectory(cacheFolder)) {
+                continue;
+            }
+
+            Map<String, String> stamps = readStamps(cacheFolder);
+            List<Path> latents = listLatents(cacheFolder);
+            stamps.keySet().retainAll(latents.stream().map(latent -> latent.getFileName().toString()).toList());
+            for (Path latent : latents) {
+                Image owner = owner(latent, entry.getValue());
+                // an image edited during training may have been encoded from either version
+                if (owner == null || !owner.hash().equals(dataset.imageHashes().get(owner.path()))) {
+                    continue;
+                }
+                Path stored = latentStorePath.resolve(dataset.variant()).resolve(owner.hash());
+                linkFile(latent, stored.resolve(latent.getFileName().toString()));
+                Files.setLastModifiedTime(stored, FileTime.fromMillis(System.currentTimeMillis()));
+                stamps.put(latent.getFileName().toString(), stamp(dataset.variant(), owner.hash()));
+            }
+            writeStamps(cacheFolder, stamps);
+        }
+    }
+
+    private String warmLatentCache(List<Image> images, String variant) throws IOException {
+        int kept = 0;
+        int discarded = 0;
+        int restored = 0;
+        for (Map.Entry<Path, List<Image>> entry : byCacheFolder(images).entrySet()) {
+            Path cacheFolder = entry.getKey();
+            Set<Image> covered = new HashSet<>();
+            if (Files.isDirectory(cacheFolder)) {
+                Map<String, String> stamps = readStamps(cacheFolder);
+                for (Path latent : listLatents(cacheFolder)) {
+                    Image owner = owner(latent, entry.getValue());
+                    if (owner != null
+                            && stamp(variant, owner.hash()).equals(stamps.get(latent.getFileName().toString()))) {
+                        covered.add(owner);
+                        kept++;
+                    } else {
+                        Files.delete(latent);
+                        discarded++;
+                    }
+                }
+            }
+
+            for (Image image : entry.getValue()) {
+                Path stored = latentStorePath.resolve(variant).resolve(image.hash());
+                if (covered.contains(image) || !Files.isDirectory(stored)) {
+                    continue;
+                }
+                int linked = linkFiles(stored, cacheFolder, image.stem() + "_");
+                if (linked > 0) {
+                    Files.setLastModifiedTime(stored, FileTime.fromMillis(System.currentTimeMillis()));
+                    restored += linked;
+                }
+            }
+        }
+
+        if (kept + discarded + restored == 0) {
+            return "Latent cache: no cached latents, ai-toolkit will encode them";
+        }
+        return "Latent cache: " + kept + " up to date, " + restored + " restored, " + discarded + " stale discarded";
+    }
+
+    public void removeLatentCaches(Path folder) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        List<Path> cacheFolders;
+        try (Stream<Path> paths = Files.walk(folder)) {
+            cacheFolders = paths
+                    .filter(Files::isDirectory)
+                    .filter(path -> path.getFileName().toString().equals(LATENT_CACHE_FOLDER))
+                    .toList();
+        }
+        for (Path cacheFolder : cacheFolders) {
+            FileUtils.deleteDirectory(cacheFolder.toFile());
+        }
+    }
+
+    private static Map<Path, List<Image>> byCacheFolder(List<Image> images) {
+        Map<Path, List<Image>> folders = new TreeMap<>();
+        images.forEach(image -> folders
+                .computeIfAbsent(image.path().resolveSibling(LATENT_CACHE_FOLDER), _ -> new ArrayList<>())
+                .add(image));
+        return folders;
+    }
+
+    // stems can share a prefix (img_1 and img_1_b), so the longest matching one owns the latent
+    private static Image owner(Path latent, List<Image> images) {
+        String name = latent.getFileName().toString();
+        return images.stream()
+                .filter(image -> name.startsWith(image.stem() + "_"))
+                .max(Comparator.comparingInt(image -> image.stem().length()))
+                .orElse(null);
+    }
+
+    private static String stamp(String variant, String imageHash) {
+        return variant + ":" + imageHash;
+    }
+
+    private static List<Path> listLatents(Path cacheFolder) throws IOException {
+        try (Stream<Path> stream = Files.list(cacheFolder)) {
+            return stream
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Map<String, String> readStamps(Path cacheFolder) throws IOException {
+        Map<String, String> stamps = new TreeMap<>();
+        Path stampFile = cacheFolder.resolve(STAMP_FILE);
+        if (Files.exists(stampFile)) {
+            for (String line : Files.readAllLines(stampFile, StandardCharsets.UTF_8)) {
+                int separator = line.lastIndexOf('=');
+                if (separator > 0) {
+                    stamps.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return stamps;
+    }
+
+    private static void writeStamps(Path cacheFolder, Map<String, String> stamps) throws IOException {
+        List<String> lines = stamps.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .toList();
+        Files.write(cacheFolder.resolve(STAMP_FILE), lines, StandardCharsets.UTF_8);
+    }
+
+    private static int linkFiles(Path sourceFolder, Path targetFolder, String prefix) throws IOException {
+        Files.createDirectories(targetFolder);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(sourceFolder)) {
+            files = stream
+                    .filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .toList();
+        }
+
+        int linked = 0;
+        for (Path file : files) {
+            if (linkFile(file, targetFolder.resolve(file.getFileName().toString()))) {
+                linked++;
+            }
+        }
+        return linked;
+    }
+
+    private static boolean linkFile(Path file, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, file);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file, target);
+        }
+        return true;
+    }
+
+    private void evictOldEntries() {
+        if (!Files.isDirectory(latentStorePath)) {
+            return;
+        }
+        try (Stream<Path> entries = Files.walk(latentStorePath, 2)) {
+            List<Path> sorted = entries
+                    .filter(entry -> entry.getNameCount() == latentStorePath.getNameCount() + 2)
+                    .filter(Files::isDirectory)
+                    .sorted(Comparator.comparing(DatasetPreparation::lastModified).reversed())
+                    .toList();
+            for (Path entry : sorted.stream().skip(MAX_CACHED_IMAGES).toList()) {
+                log.debug("Evicting cached latents of image {}", entry.getFileName());
+                FileUtils.deleteDirectory(entry.toFile());
+            }
+        } catch (IOException e) {
+            log.warn("Could not evict cached latents in {}", latentStorePath, e);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private List<Image> scan(Path folder) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(folder)) {
+            paths = stream
+                    .filter(path -> !isIgnored(folder.relativize(path)))
+                    .filter(Files::isRegularFile)
+                    .filter(DatasetIndex::isImage)
+                    .sorted()
+                    .toList();
+        }
+
+        List<Image> images = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            images.add(describe(path));
+        }
+        return images;
+    }
+
+    private static boolean isIgnored(Path relative) {
+        for (Path part : relative) {
+            String name = part.toString();
+            if (name.startsWith(".") || name.startsWith("_")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Image describe(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        DatasetIndex.DatasetItem indexed = datasetIndex.get(path).orElse(null);
+        if (indexed != null
+                && indexed.size() == attributes.size()
+                && indexed.modified() == attributes.lastModifiedTime().toMillis()) {
+            return new Image(path, indexed.hash(), indexed.width(), indexed.height());
+        }
+        int[] dimensions = DatasetIndex.readDimensions(path);
+        return new Image(path, BlobStore.hash(path), dimensions[0], dimensions[1]);
+    }
+
+    // latents depend on the model's VAE and the bucket resolutions, the image contents are keyed separately
+    private static String variant(JobConfiguration.ProcessItem process, JobConfiguration.Dataset dataset) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        String model = process.getModel() != null ? process.getModel().getNameOrPath() : null;
+        digest.update(("model=" + model + "\nresolution=" + dataset.getResolution() + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+    }
+
+    private static List<String> bucketStatistics(List<Image> images, List<Integer> resolutions, int batchSize) {
+        if (resolutions == null || resolutions.isEmpty() || images.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (int resolution : resolutions.stream().filter(Objects::nonNull).distinct().toList()) {
+            Map<String, Integer> buckets = new TreeMap<>();
+            int upscaled = 0;
+            for (Image image : images) {
+                if (image.width() <= 0 || image.height() <= 0) {
+                    continue;
+                }
+                double scale = Math.sqrt((double) resolution * resolution / ((double) image.width() * image.height()));
+                if (scale > 1) {
+                    upscaled++;
+                }
+                int width = Math.max(BUCKET_DIVISIBILITY, (int) (image.width() * scale) / BUCKET_DIVISIBILITY * BUCKET_DIVISIBILITY);
+                int height = Math.max(BUCKET_DIVISIBILITY, (int) (image.height() * scale) / BUCKET_DIVISIBILITY * BUCKET_DIVISIBILITY);
+                buckets.merge(width + "x" + height, 1, Integer::sum);
+            }
+
+            lines.add("Resolution " + resolution + ": " + buckets.size() + " buckets ("
+                    + buckets.entrySet().stream()
+                    .map(entry -> entry.getKey() + ": " + entry.getValue())
+                    .collect(Collectors.joining(", "))
+                    + ")" + (upscaled > 0 ? ", " + upscaled + " images upscaled" : ""));
+
+            List<String> undersized = buckets.entrySet().stream()
+                    .filter(entry -> entry.getValue() < batchSize)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            if (!undersized.isEmpty()) {
+                lines.add("Resolution " + resolution + ": buckets smaller than batch size " + batchSize + ": "
+                        + String.join(", ", undersized));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,65 @@
+package de.hthoene.loralite.aitoolkit;
+
+import de.hthoene.loralite.util.GpuInfo;
+import de.hthoene.loralite.util.GpuMonitor;
+import de.hthoene.loralite.util.GpuMonitorProperties;
+import de.hthoene.loralite.util.GpuStats;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+public class GpuScheduler {
+    public static final int UNPINNED = -1;
+
+    private final GpuMonitor gpuMonitor;
+    private final GpuMonitorProperties monitorProperties;
+
+    public GpuScheduler(GpuMonitor gpuMonitor, GpuMonitorProperties monitorProperties) {
+        this.gpuMonitor = gpuMonitor;
+        this.monitorProperties = monitorProperties;
+    }
+
+    public Optional<Integer> selectDevice(Set<Integer> occupiedDevices) {
+        if (occupiedDevices.contains(UNPINNED)) {
+            return Optional.empty();
+        }
+
+        GpuStats stats = gpuMonitor.getLastStats();
+        if (stats == null && gpuMonitor.isAwaitingFirstSample()) {
+            // an unpinned job would block every device for its whole run, so wait for the device list
+            return Optional.empty();
+        }
+        if (stats == null || stats.getGpus() == null || stats.getGpus().isEmpty()) {
+            return occupiedDevices.isEmpty() ? Optional.of(UNPINNED) : Optional.empty();
+        }
+
+        return stats.getGpus().stream()
+                .filter(gpu -> !occupiedDevices.contains(gpu.getIndex()))
+                .filter(gpu -> freeMemory(gpu) >= monitorProperties.getMinFreeVramMb())
+                .max(Comparator.comparingLong(GpuScheduler::freeMemory))
+                .map(GpuInfo::getIndex);
+    }
+
+    public Map<String, String> environmentFor(int device) {
+        if (device == UNPINNED) {
+            return Map.of();
+        }
+
+        GpuStats stats = gpuMonitor.getLastStats();
+        if (stats != null && "amd".equals(stats.getBackend())) {
+            return Map.of("HIP_VISIBLE_DEVICES", String.valueOf(device));
+        }
+        // nvidia-smi indices follow the PCI bus, CUDA numbers the fastest device first unless told otherwise
+        return Map.of(
+                "CUDA_DEVICE_ORDER", "PCI_BUS_ID",
+                "CUDA_VISIBLE_DEVICES", String.valueOf(device));
+    }
+
+    private static long freeMemory(GpuInfo gpu) {
+        return gpu.getMem_total() - gpu.getMem_used();
+    }
+}
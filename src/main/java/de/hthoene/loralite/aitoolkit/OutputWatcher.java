@@ -0,0 +1,98 @@
+package de.hthoene.loralite.aitoolkit;
+
+import de.hthoene.loralite.util.EventBroadcaster;
+import de.hthoene.loralite.util.WorkflowEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class OutputWatcher {
+    private static final Set<String> SAMPLE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "webp");
+
+    private final AiToolkitService aiToolkitService;
+    private final EventBroadcaster eventBroadcaster;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile WorkflowEvent.OutputChanged snapshot;
+
+    public OutputWatcher(AiToolkitService aiToolkitService, EventBroadcaster eventBroadcaster) {
+        this.aiToolkitService = aiToolkitService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @PostConstruct
+    void start() {
+        snapshot = scan();
+        scheduler.scheduleWithFixedDelay(this::check, 2, 2, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public WorkflowEvent.OutputChanged getSnapshot() {
+        return snapshot;
+    }
+
+    private void check() {
+        WorkflowEvent.OutputChanged current = scan();
+        if (!current.equals(snapshot)) {
+            snapshot = current;
+            eventBroadcaster.broadcast(current);
+        }
+    }
+
+    private WorkflowEvent.OutputChanged scan() {
+        Path outputFolder = aiToolkitService.getOutputFolder();
+        List<Path> samples = listNewestFirst(outputFolder.resolve("samples"), SAMPLE_EXTENSIONS);
+        List<Path> checkpoints = listNewestFirst(outputFolder, Set.of("safetensors"));
+        return new WorkflowEvent.OutputChanged(outputFolder, samples, checkpoints);
+    }
+
+    private static List<Path> listNewestFirst(Path folder, Set<String> extensions) {
+        if (!Files.isDirectory(folder)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(folder)) {
+            return stream
+                    .filter(Files::isRegularFile)
+                    .filter(path -> extensions.contains(extension(path)))
+                    .sorted(Comparator.comparingLong(OutputWatcher::lastModified).reversed())
+                    .toList();
+        } catch (IOException e) {
+            log.debug("Could not list {}", folder, e);
+            return List.of();
+        }
+    }
+
+    private static String extension(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
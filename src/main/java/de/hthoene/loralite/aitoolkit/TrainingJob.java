@@ -0,0 +1,44 @@
+package de.hthoene.loralite.aitoolkit;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class TrainingJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        FINISHED,
+        FAILED,
+        CANCELLED
+    }
+
+    private String id;
+    private String name;
+    private int priority;
+    private long sequence;
+    private Status status;
+
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Integer exitCode;
+    private Integer gpuIndex;
+
+    private String configFile;
+    private String logFile;
+    private String outputFolder;
+
+    @JsonIgnore
+    public boolean isQueued() {
+        return status == Status.QUEUED;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.FINISHED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+}
@@ -0,0 +1,101 @@
+package de.hthoene.loralite.aitoolkit;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+public class TrainingMetrics {
+
+    public record Snapshot(int step,
+                           int totalSteps,
+                           float iterationsPerSecond,
+                           float learningRate,
+                           float loss,
+                           Duration eta) {
+    }
+
+    private int size;
+    private int totalSteps;
+    private int[] steps = new int[256];
+    private long[] timestamps = new long[256];
+    private float[] loss = new float[256];
+    private float[] learningRate = new float[256];
+    private float[] iterationsPerSecond = new float[256];
+
+    public synchronized boolean record(int step,
+                                       int total,
+                                       float itPerSecond,
+                                       float lr,
+                                       float lossValue,
+                                       long timestampMs) {
+        boolean advanced = size == 0 || step > steps[size - 1];
+        if (!advanced) {
+            if (step < steps[size - 1]) {
+                return false;
+            }
+            // tqdm redraws the same step, keep the newest values without announcing a new point
+            size--;
+        }
+        totalSteps = total;
+        if (size == steps.length) {
+            grow();
+        }
+        steps[size] = step;
+        timestamps[size] = timestampMs;
+        loss[size] = lossValue;
+        learningRate[size] = lr;
+        iterationsPerSecond[size] = itPerSecond;
+        size++;
+        return advanced;
+    }
+
+    private void grow() {
+        int capacity = steps.length * 2;
+        steps = Arrays.copyOf(steps, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        loss = Arrays.copyOf(loss, capacity);
+        learningRate = Arrays.copyOf(learningRate, capacity);
+        iterationsPerSecond = Arrays.copyOf(iterationsPerSecond, capacity);
+    }
+
+    public synchronized Snapshot snapshot() {
+        if (size == 0) {
+            return null;
+        }
+        int last = size - 1;
+        float rate = iterationsPerSecond[last];
+        Duration eta = rate > 0 && totalSteps > steps[last]
+                ? Duration.ofMillis((long) ((totalSteps - steps[last]) / rate * 1000))
+                : Duration.ZERO;
+        return new Snapshot(steps[last], totalSteps, rate, learningRate[last], loss[last], eta);
+    }
+
+    public synchronized float[] lossSeries(int points) {
+        return downsample(loss, points);
+    }
+
+    public synchronized float[] throughputSeries(int points) {
+        return downsample(iterationsPerSecond, points);
+    }
+
+    private float[] downsample(float[] values, int points) {
+        int buckets = Math.min(points, size);
+        float[] result = new float[buckets];
+        int filled = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int from = (int) ((long) bucket * size / buckets);
+            int to = (int) ((long) (bucket + 1) * size / buckets);
+            double sum = 0;
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (!Float.isNaN(values[i])) {
+                    sum += values[i];
+                    count++;
+                }
+            }
+            if (count > 0) {
+                result[filled++] = (float) (sum / count);
+            }
+        }
+        return Arrays.copyOf(result, filled);
+    }
+}
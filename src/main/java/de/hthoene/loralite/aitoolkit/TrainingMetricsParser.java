@@ -0,0 +1,81 @@
+package de.hthoene.loralite.aitoolkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TrainingMetricsParser extends OutputStream {
+    private static final int MAX_LINE_BYTES = 4096;
+
+    private static final Pattern PROGRESS_PATTERN =
+            Pattern.compile("\\|\\s*(\\d+)/(\\d+)\\s*\\[[^\\],]*,\\s*([\\d.]+)\\s*(it/s|s/it)");
+    private static final Pattern LEARNING_RATE_PATTERN =
+            Pattern.compile("\\blr:\\s*([-+]?[\\d.]+(?:[eE][-+]?\\d+)?)");
+    private static final Pattern LOSS_PATTERN =
+            Pattern.compile("\\bloss:\\s*([-+]?[\\d.]+(?:[eE][-+]?\\d+)?)");
+
+    private final TrainingMetrics metrics;
+    private final Runnable onUpdate;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    public TrainingMetricsParser(TrainingMetrics metrics, Runnable onUpdate) {
+        this.metrics = metrics;
+        this.onUpdate = onUpdate;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (b == '\n' || b == '\r') {
+            if (line.size() > 0) {
+                parseLine(line.toString(StandardCharsets.UTF_8));
+                line.reset();
+            }
+        } else if (line.size() < MAX_LINE_BYTES) {
+            line.write(b);
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            write(b[i]);
+        }
+    }
+
+    void parseLine(String text) {
+        Matcher progress = PROGRESS_PATTERN.matcher(text);
+        if (!progress.find()) {
+            return;
+        }
+
+        int step = Integer.parseInt(progress.group(1));
+        int total = Integer.parseInt(progress.group(2));
+        float rate = Float.parseFloat(progress.group(3));
+        float itPerSecond = "s/it".equals(progress.group(4)) ? (rate > 0 ? 1f / rate : 0f) : rate;
+        float learningRate = find(LEARNING_RATE_PATTERN, text);
+        float loss = find(LOSS_PATTERN, text);
+
+        // sample generation and latent caching use tqdm too, only the training bar reports lr/loss
+        if (Float.isNaN(learningRate) && Float.isNaN(loss)) {
+            return;
+        }
+
+        if (metrics.record(step, total, itPerSecond, learningRate, loss, System.currentTimeMillis())) {
+            onUpdate.run();
+        }
+    }
+
+    private static float find(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            return Float.NaN;
+        }
+        try {
+            return Float.parseFloat(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package de.hthoene.loralite.aitoolkit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+@Slf4j
+public class TrainingQueue {
+    private static final Comparator<TrainingJob> DISPATCH_ORDER = Comparator
+            .comparingInt(TrainingJob::getPriority).reversed()
+            .thenComparingLong(TrainingJob::getSequence);
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final Path queueFile;
+    private final List<TrainingJob> jobs = new ArrayList<>();
+
+    private long nextSequence;
+
+    public TrainingQueue(Path queueFile) {
+        this.queueFile = queueFile;
+        load();
+    }
+
+    private void load() {
+        if (!Files.exists(queueFile)) {
+            return;
+        }
+        try {
+            jobs.addAll(mapper.readValue(queueFile.toFile(), new TypeReference<List<TrainingJob>>() {}));
+            nextSequence = jobs.stream().mapToLong(TrainingJob::getSequence).max().orElse(0) + 1;
+        } catch (IOException e) {
+            log.warn("Could not read training queue {}", queueFile, e);
+        }
+    }
+
+    public synchronized void add(TrainingJob job) {
+        job.setSequence(nextSequence++);
+        jobs.add(job);
+        save();
+    }
+
+    public synchronized Optional<TrainingJob> peekNext() {
+        return jobs.stream()
+                .filter(TrainingJob::isQueued)
+                .min(DISPATCH_ORDER);
+    }
+
+    public synchronized Optional<TrainingJob> find(String id) {
+        return jobs.stream().filter(job -> job.getId().equals(id)).findFirst();
+    }
+
+    public synchronized boolean remove(String id) {
+        boolean removed = jobs.removeIf(job -> job.getId().equals(id) && job.isQueued());
+        if (removed) {
+            save();
+        }
+        return removed;
+    }
+
+    public synchronized void clearFinished() {
+        if (jobs.removeIf(TrainingJob::isFinished)) {
+            save();
+        }
+    }
+
+    public synchronized int queuedCount() {
+        return (int) jobs.stream().filter(TrainingJob::isQueued).count();
+    }
+
+    public synchronized List<TrainingJob> list() {
+        List<TrainingJob> queued = jobs.stream()
+                .filter(TrainingJob::isQueued)
+                .sorted(DISPATCH_ORDER)
+                .toList();
+        List<TrainingJob> others = jobs.stream()
+                .filter(job -> !job.isQueued())
+                .sorted(Comparator.comparingLong(TrainingJob::getSequence).reversed())
+                .toList();
+
+        List<TrainingJob> result = new ArrayList<>(others.size() + queued.size());
+        others.stream().filter(job -> job.getStatus() == TrainingJob.Status.RUNNING).forEach(result::add);
+        result.addAll(queued);
+        others.stream().filter(job -> job.getStatus() != TrainingJob.Status.RUNNING).forEach(result::add);
+        return result;
+    }
+
+    public synchronized void save() {
+        try {
+            Path parent = queueFile.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tempFile = queueFile.resolveSibling(queueFile.getFileName() + ".tmp");
+            mapper.writerWithDefaultPrettyPrinter().writeValue(tempFile.toFile(), jobs);
+            Files.move(tempFile, queueFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist training queue {}", queueFile, e);
+        }
+    }
+}
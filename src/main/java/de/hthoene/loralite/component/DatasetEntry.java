@@ -1,86 +1,210 @@
 package de.hthoene.loralite.component;
 
+import com.flowingcode.vaadin.addons.imagecrop.Crop;
 import com.flowingcode.vaadin.addons.imagecrop.ImageCrop;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.html.Image;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.server.streams.DownloadHandler;
+import de.hthoene.loralite.util.CaptionStore;
+import de.hthoene.loralite.util.ImageEditService;
+import de.hthoene.loralite.util.ThumbnailService;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Slf4j
 public class DatasetEntry extends HorizontalLayout {
 
-    public DatasetEntry(File imageFile, File captionFile, LogPanel logPanel, Consumer<Void> onRefresh) {
+    private final CaptionStore captionStore;
+    private final ImageEditService imageEditService;
+    private final Supplier<Integer> trainingResolution;
+    private final LogPanel logPanel;
+    private final File captionFile;
+    private final Span captionState = new Span();
+
+    public DatasetEntry(File imageFile,
+                        File captionFile,
+                        LogPanel logPanel,
+                        ThumbnailService thumbnailService,
+                        CaptionStore captionStore,
+                        ImageEditService imageEditService,
+                        Supplier<Integer> trainingResolution,
+                        Consumer<Void> onRefresh) {
+        this.captionStore = captionStore;
+        this.imageEditService = imageEditService;
+        this.trainingResolution = trainingResolution;
+        this.logPanel = logPanel;
+        this.captionFile = captionFile;
+
         setWidthFull();
         setAlignItems(Alignment.CENTER);
 
-        Image image = new Image(DownloadHandler.forFile(imageFile), "dataset_image");
+        Image image = new Image(thumbnailService.url(imageFile.toPath()), "dataset_image");
         image.setHeight("10rem");
         image.getStyle().set("border-radius", "0.5rem");
-        image.addClickListener(event -> openCropDialog(image, imageFile, onRefresh));
+        image.addClickListener(event -> openCropDialog(imageFile, onRefresh));
 
         add(image);
 
         TextArea captionArea = new TextArea("Caption", "Caption here...");
         try {
-            captionArea.setValue(Files.readString(captionFile.toPath()));
+            captionArea.setValue(captionStore.read(captionFile.toPath()));
         } catch (IOException e) {
             logPanel.log(e);
         }
         captionArea.setWidthFull();
         captionArea.setHeight("8rem");
+        captionArea.setValueChangeMode(ValueChangeMode.LAZY);
         captionArea.addValueChangeListener(event -> {
-            try {
-                Files.writeString(
-                        captionFile.toPath(),
-                        event.getValue(),
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.TRUNCATE_EXISTING
-                );
-            } catch (IOException e) {
-                logPanel.log(e);
+            if (!event.isFromClient()) {
+                return;
             }
+            UI ui = UI.getCurrent();
+            captionState.setText("Unsaved changes");
+            captionStore.write(captionFile.toPath(), event.getValue())
+                    .whenComplete((_, error) -> ui.access(() -> {
+                        if (error != null) {
+                            captionState.setText("Save failed");
+                            logPanel.log("Could not save caption " + captionFile.getName() + ": " + error.getMessage());
+                        } else {
+                            captionState.setText("Saved");
+                        }
+                    }));
         });
-        add(captionArea);
+
+        captionState.getStyle().set("font-size", "var(--lumo-font-size-xs)");
+        captionState.getStyle().set("color", "var(--lumo-secondary-text-color)");
+
+        VerticalLayout captionLayout = new VerticalLayout(captionArea, captionState);
+        captionLayout.setPadding(false);
+        captionLayout.setSpacing(false);
+        captionLayout.setWidthFull();
+        add(captionLayout);
 
         Button deleteButton = new Button("Delete", clickEvent -> openDeleteDialog(imageFile, captionFile, logPanel, onRefresh));
         add(deleteButton);
     }
 
-    private void openCropDialog(Image sourceImage, File imageFile, Consumer<Void> onRefresh) {
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        captionStore.flush(captionFile.toPath());
+    }
+
+    private void openCropDialog(File imageFile, Consumer<Void> onRefresh) {
+        Image sourceImage = new Image(DownloadHandler.forFile(imageFile), "dataset_image");
         Dialog dialog = new Dialog();
         ImageCrop imageCrop = new ImageCrop(sourceImage);
+        boolean serverSide = ImageEditService.supports(imageFile.toPath());
+
+        Checkbox resizeCheckbox = new Checkbox("Resize to the training resolution");
+        resizeCheckbox.setVisible(serverSide && trainingResolution.get() != null);
+        Button restoreButton = new Button("Restore previous version", _ -> {
+            try {
+                imageEditService.restore(imageFile.toPath());
+                Notification.show("Previous version restored");
+            } catch (IOException e) {
+                log.error("Error while restoring image", e);
+                logPanel.log(e);
+            }
+            onRefresh.accept(null);
+            dialog.close();
+        });
+        restoreButton.setVisible(serverSide && imageEditService.hasBackup(imageFile.toPath()));
 
         dialog.setCloseOnOutsideClick(true);
         dialog.setCloseOnEsc(true);
         dialog.add(imageCrop);
+        dialog.getFooter().add(resizeCheckbox, restoreButton);
         dialog.open();
 
         dialog.addDialogCloseActionListener(closeEvent -> {
-            try {
-                byte[] croppedBytes = imageCrop.getCroppedImageBase64();
-                if (croppedBytes != null) {
-                    Files.write(imageFile.toPath(), croppedBytes);
-                }
-            } catch (IOException | IllegalArgumentException e) {
-                log.error("Error while cropping image", e);
-            } finally {
-                onRefresh.accept(null);
+            if (!serverSide) {
+                applyBrowserCrop(imageFile, imageCrop, onRefresh);
                 dialog.close();
+                return;
             }
+            Integer maxEdge = resizeCheckbox.getValue() ? trainingResolution.get() : null;
+            applyServerCrop(imageFile, imageCrop, maxEdge, () -> {
+                onRefresh.accept(null);
+                dialog.close();
+            });
         });
     }
 
+    private void applyServerCrop(File imageFile, ImageCrop imageCrop, Integer maxEdge, Runnable onDone) {
+        Crop crop = imageCrop.getCrop();
+        if (crop == null || crop.getWidth() <= 0 || crop.getHeight() <= 0) {
+            if (maxEdge != null) {
+                crop(imageFile, new ImageEditService.CropRegion(0, 0, 1, 1), maxEdge);
+            }
+            onDone.run();
+            return;
+        }
+        if ("%".equals(crop.getUnit())) {
+            crop(imageFile, new ImageEditService.CropRegion(crop.getX() / 100, crop.getY() / 100,
+                    crop.getWidth() / 100, crop.getHeight() / 100), maxEdge);
+            onDone.run();
+            return;
+        }
+
+        // pixel crops are measured on the rendered image, so only its size travels back instead of the pixels
+        imageCrop.getElement().executeJs(
+                        "const img = this.querySelector('img') || (this.shadowRoot && this.shadowRoot.querySelector('img'));"
+                                + "return img && img.width > 0 ? img.width + 'x' + img.height : null;")
+                .then(String.class, size -> {
+                    if (size != null) {
+                        String[] dimensions = size.split("x");
+                        double width = Double.parseDouble(dimensions[0]);
+                        double height = Double.parseDouble(dimensions[1]);
+                        crop(imageFile, new ImageEditService.CropRegion(crop.getX() / width, crop.getY() / height,
+                                crop.getWidth() / width, crop.getHeight() / height), maxEdge);
+                    }
+                    onDone.run();
+                }, error -> {
+                    log.error("Could not measure the crop area: {}", error);
+                    onDone.run();
+                });
+    }
+
+    private void crop(File imageFile, ImageEditService.CropRegion region, Integer maxEdge) {
+        try {
+            String size = imageEditService.crop(imageFile.toPath(), region, maxEdge);
+            logPanel.log("Cropped " + imageFile.getName() + " to " + size);
+        } catch (IOException e) {
+            log.error("Error while cropping image", e);
+            logPanel.log(e);
+            Notification.show("Could not crop " + imageFile.getName());
+        }
+    }
+
+    private void applyBrowserCrop(File imageFile, ImageCrop imageCrop, Consumer<Void> onRefresh) {
+        try {
+            byte[] croppedBytes = imageCrop.getCroppedImageBase64();
+            if (croppedBytes != null) {
+                Files.write(imageFile.toPath(), croppedBytes);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Error while cropping image", e);
+        } finally {
+            onRefresh.accept(null);
+        }
+    }
+
     private void openDeleteDialog(File imageFile,
                                   File captionFile,
                                   LogPanel logPanel,
@@ -90,9 +214,12 @@ public class DatasetEntry extends HorizontalLayout {
         confirmDialog.setText(imageFile.getName());
         confirmDialog.setCancelable(true);
         confirmDialog.addConfirmListener(confirmEvent -> {
+            captionStore.discard(captionFile.toPath());
             try {
                 Files.deleteIfExists(imageFile.toPath());
                 Files.deleteIfExists(captionFile.toPath());
+                // a later upload under the same name must not offer the deleted image as its previous version
+                imageEditService.discardBackups(imageFile.toPath());
             } catch (IOException e) {
                 logPanel.log(e);
                 Notification.show("Could not delete files");
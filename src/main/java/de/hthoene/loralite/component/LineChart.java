@@ -0,0 +1,52 @@
+package de.hthoene.loralite.component;
+
+import com.vaadin.flow.component.html.Image;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public class LineChart extends Image {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 60;
+
+    public LineChart(String alt) {
+        super("", alt);
+        setWidth(WIDTH + "px");
+        setHeight(HEIGHT + "px");
+        getStyle().set("border", "1px solid var(--lumo-contrast-10pct)");
+        getStyle().set("border-radius", "0.25rem");
+        clear();
+    }
+
+    public void clear() {
+        setSrc(toDataUri(""));
+    }
+
+    public void setSeries(float[][] series, String[] colors, float minY, float maxY) {
+        StringBuilder lines = new StringBuilder();
+        for (int s = 0; s < series.length; s++) {
+            float[] values = series[s];
+            if (values.length == 0) {
+                continue;
+            }
+            lines.append("<polyline fill='none' stroke-width='1.5' stroke='")
+                    .append(colors[s % colors.length])
+                    .append("' points='");
+            float range = Math.max(1e-9f, maxY - minY);
+            for (int i = 0; i < values.length; i++) {
+                float x = values.length == 1 ? WIDTH : i * (float) WIDTH / (values.length - 1);
+                float y = HEIGHT - (Math.clamp(values[i], minY, maxY) - minY) / range * HEIGHT;
+                lines.append(String.format(Locale.ROOT, "%.1f,%.1f ", x, y));
+            }
+            lines.append("'/>");
+        }
+        setSrc(toDataUri(lines.toString()));
+    }
+
+    private static String toDataUri(String content) {
+        String svg = "<svg xmlns='http://www.w3.org/2000/svg' width='%d' height='%d' viewBox='0 0 %d %d' preserveAspectRatio='none'>%s</svg>"
+                .formatted(WIDTH, HEIGHT, WIDTH, HEIGHT, content);
+        return "data:image/svg+xml;charset=utf-8," + URLEncoder.encode(svg, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,56 @@
+package de.hthoene.loralite.component;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class LogLineBuffer {
+
+    public record LogLine(long number, String text) {
+    }
+
+    private final String[] lines;
+    private int head;
+    private int size;
+    private long nextNumber;
+
+    public LogLineBuffer(int capacity) {
+        this.lines = new String[Math.max(1, capacity)];
+    }
+
+    public synchronized void add(String line) {
+        lines[head] = line;
+        head = (head + 1) % lines.length;
+        if (size < lines.length) {
+            size++;
+        }
+        nextNumber++;
+    }
+
+    public synchronized void replaceLast(String line) {
+        if (size == 0) {
+            add(line);
+            return;
+        }
+        lines[(head - 1 + lines.length) % lines.length] = line;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(lines, null);
+        head = 0;
+        size = 0;
+    }
+
+    public synchronized Stream<LogLine> fetch(int offset, int limit) {
+        int end = Math.min(size, offset + limit);
+        long firstNumber = nextNumber - size;
+        return IntStream.range(Math.max(0, offset), end)
+                .mapToObj(i -> new LogLine(firstNumber + i, lines[(head - size + i + lines.length) % lines.length]))
+                .toList()
+                .stream();
+    }
+}
@@ -1,7 +1,11 @@
 package de.hthoene.loralite.component;
 
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
-import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.component.virtuallist.VirtualList;
+import com.vaadin.flow.data.provider.CallbackDataProvider;
+import com.vaadin.flow.data.provider.DataProvider;
+import de.hthoene.loralite.util.LogNormalizer;
+import de.hthoene.loralite.util.LogProperties;
 import de.hthoene.loralite.util.WorkspaceProperties;
 import lombok.extern.slf4j.Slf4j;
 
@@ -20,12 +24,17 @@ public class LogPanel extends VerticalLayout {
     private static final Pattern ANSI_PATTERN =
             Pattern.compile("(\\u001B\\[[0-?]*[ -/]*[@-~])");
 
-    private final TextArea logArea = new TextArea();
+    private final VirtualList<LogLineBuffer.LogLine> logList = new VirtualList<>();
+    private final LogLineBuffer lines;
+    private final CallbackDataProvider<LogLineBuffer.LogLine, Void> dataProvider;
     private final File logFile;
+    private final LogNormalizer normalizer = new LogNormalizer();
 
     private String lastLine;
+    private boolean liveLineShown;
+    private boolean linesChanged;
 
-    public LogPanel(WorkspaceProperties workspaceProperties) throws IOException {
+    public LogPanel(WorkspaceProperties workspaceProperties, LogProperties logProperties) throws IOException {
         Path logFolderPath = workspaceProperties.getLogsPath();
         Files.createDirectories(logFolderPath);
 
@@ -36,6 +45,11 @@ public class LogPanel extends VerticalLayout {
         }
 
         this.logFile = currentLogFile;
+        this.lines = new LogLineBuffer(logProperties.getRetainedLines());
+        this.dataProvider = DataProvider.fromCallbacks(
+                query -> lines.fetch(query.getOffset(), query.getLimit()),
+                query -> lines.size()
+        );
         initializeLayout();
     }
 
@@ -43,12 +57,21 @@ public class LogPanel extends VerticalLayout {
         setMinHeight("0");
         setPadding(false);
 
-        logArea.setSizeFull();
-        logArea.setMinHeight("0");
-        logArea.setTitle("Logs");
-        logArea.setReadOnly(true);
-
-        add(logArea);
+        logList.setSizeFull();
+        logList.setMinHeight("0");
+        logList.getElement().setAttribute("title", "Logs");
+        logList.getStyle()
+                .set("font-family", "var(--lumo-font-family-monospace)")
+                .set("font-size", "var(--lumo-font-size-xs)")
+                .set("white-space", "pre-wrap")
+                .set("border", "1px solid var(--lumo-contrast-10pct)")
+                .set("border-radius", "var(--lumo-border-radius-m)")
+                .set("padding", "0 0.5rem")
+                .set("box-sizing", "border-box");
+        logList.setRenderer(LogLineBuffer.LogLine::text);
+        logList.setDataProvider(dataProvider);
+
+        add(logList);
     }
 
     public File getLogFile() {
@@ -57,38 +80,44 @@ public class LogPanel extends VerticalLayout {
 
     public void appendToUi(String message) {
         String cleaned = stripAnsi(message);
-        if (cleaned.isBlank()) {
+        if (cleaned.isEmpty()) {
             return;
         }
 
-        String[] lines = cleaned.split("\\R");
-        StringBuilder toAppend = new StringBuilder();
-
-        for (String line : lines) {
-            if (line.isBlank()) {
-                continue;
-            }
-            if (line.equals(lastLine)) {
-                continue;
-            }
-            if (toAppend.length() > 0) {
-                toAppend.append("\n");
-            }
-            toAppend.append(line);
-            lastLine = line;
+        linesChanged = false;
+        normalizer.accept(cleaned, this::commitLine, this::updateLiveLine);
+        if (!linesChanged) {
+            return;
         }
 
-        if (toAppend.length() == 0) {
+        dataProvider.refreshAll();
+        logList.scrollToEnd();
+    }
+
+    private void commitLine(String line) {
+        if (liveLineShown) {
+            lines.replaceLast(line);
+            liveLineShown = false;
+        } else if (line.isBlank() || line.equals(lastLine)) {
             return;
+        } else {
+            lines.add(line);
         }
+        lastLine = line;
+        linesChanged = true;
+    }
 
-        String current = logArea.getValue();
-        if (current == null || current.isBlank()) {
-            logArea.setValue(toAppend.toString());
+    private void updateLiveLine(String line) {
+        if (line.isBlank()) {
+            return;
+        }
+        if (liveLineShown) {
+            lines.replaceLast(line);
         } else {
-            logArea.setValue(current + "\n" + toAppend);
+            lines.add(line);
+            liveLineShown = true;
         }
-        logArea.scrollToEnd();
+        linesChanged = true;
     }
 
     public void log(Throwable t) {
@@ -117,16 +146,17 @@ public class LogPanel extends VerticalLayout {
     }
 
     public void clearUi() {
-        logArea.setValue("");
+        lines.clear();
+        dataProvider.refreshAll();
+        normalizer.reset();
         lastLine = null;
+        liveLineShown = false;
     }
 
     private static String stripAnsi(String s) {
         if (s == null) {
             return "";
         }
-        String cleaned = ANSI_PATTERN.matcher(s).replaceAll("");
-        cleaned = cleaned.replace("\r", "\n");
-        return cleaned;
+        return ANSI_PATTERN.matcher(s).replaceAll("");
     }
 }
@@ -0,0 +1,278 @@
+package de.hthoene.loralite.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import de.hthoene.loralite.aitoolkit.TrainingMetrics;
+import de.hthoene.loralite.aitoolkit.TrainingMetricsParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@Slf4j
+public class ArchiveCatalog {
+    private static final DateTimeFormatter ARCHIVE_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final Set<String> SAMPLE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "webp");
+    private static final int LOG_TAIL_BYTES = 64 * 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+    private final Path catalogFile;
+    private final Map<String, ArchiveEntry> entries = new LinkedHashMap<>();
+
+    public ArchiveCatalog(Path catalogFile) {
+        this.catalogFile = catalogFile;
+        load();
+    }
+
+    private void load() {
+        if (!Files.exists(catalogFile)) {
+            return;
+        }
+        try {
+            mapper.readValue(catalogFile.toFile(), new TypeReference<List<ArchiveEntry>>() {})
+                    .forEach(entry -> entries.put(entry.getName(), entry));
+        } catch (IOException e) {
+            log.warn("Could not read archive catalog {}, it will be rebuilt", catalogFile, e);
+        }
+    }
+
+    public void reconcile(List<String> archiveNames) {
+        Set<String> present = Set.copyOf(archiveNames);
+        boolean changed;
+        synchronized (this) {
+            // tiered archives live outside the archive folder and stay listed while their copy exists
+            changed = entries.values().removeIf(entry -> entry.getLocation() != null
+                    ? !Files.isDirectory(Path.of(entry.getLocation()))
+                    : !present.contains(entry.getName()));
+        }
+
+        for (String name : archiveNames) {
+            synchronized (this) {
+                if (entries.containsKey(name)) {
+                    continue;
+                }
+            }
+            try {
+                ArchiveEntry entry = index(catalogFile.resolveSibling(name));
+                synchronized (this) {
+                    entries.put(name, entry);
+                }
+                changed = true;
+            } catch (IOException e) {
+                log.warn("Could not index archive {}", name, e);
+            }
+        }
+
+        if (changed) {
+            save();
+        }
+    }
+
+    public void add(Path archiveFolder) {
+        try {
+            ArchiveEntry entry = index(archiveFolder);
+            synchronized (this) {
+                entries.put(entry.getName(), entry);
+            }
+            save();
+        } catch (IOException e) {
+            log.warn("Could not index archive {}", archiveFolder, e);
+        }
+    }
+
+    public void relocate(String name, Path archiveFolder) {
+        synchronized (this) {
+            ArchiveEntry entry = entries.get(name);
+            if (entry == null) {
+                return;
+            }
+            entry.setLocation(archiveFolder.toString());
+        }
+        save();
+    }
+
+    public synchronized Optional<ArchiveEntry> find(String name) {
+        return Optional.ofNullable(entries.get(name));
+    }
+
+    public void remove(String name) {
+        boolean removed;
+        synchronized (this) {
+            removed = entries.remove(name) != null;
+        }
+        if (removed) {
+            save();
+        }
+    }
+
+    public synchronized List<ArchiveEntry> query(String filter, int offset, int limit) {
+        return entries.values().stream()
+                .filter(entry -> entry.matches(filter))
+                .sorted(Comparator.comparing(ArchiveEntry::getName).reversed())
+                .skip(offset)
+                .limit(limit)
+                .toList();
+    }
+
+    public synchronized int count(String filter) {
+        return (int) entries.values().stream()
+                .filter(entry -> entry.matches(filter))
+                .count();
+    }
+
+    public synchronized List<ArchiveEntry> list() {
+        return List.copyOf(entries.values());
+    }
+
+    private ArchiveEntry index(Path archiveFolder) throws IOException {
+        String name = archiveFolder.getFileName().toString();
+        ArchiveEntry entry = new ArchiveEntry();
+        entry.setName(name);
+        entry.setArchivedAt(parseTimestamp(name, archiveFolder));
+        if (!archiveFolder.getParent().equals(catalogFile.getParent())) {
+            entry.setLocation(archiveFolder.toString());
+        }
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(archiveFolder)) {
+            files = paths.filter(Files::isRegularFile).toList();
+        }
+
+        Path newestSample = null;
+        long newestSampleTime = Long.MIN_VALUE;
+        for (Path file : files) {
+            Path relative = archiveFolder.relativize(file);
+            String top = relative.getName(0).toString();
+            String fileName = file.getFileName().toString();
+            String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            long size = Files.size(file);
+            entry.setTotalBytes(entry.getTotalBytes() + size);
+
+            switch (top) {
+                case "configs" -> {
+                    if (fileName.endsWith(".yaml") || fileName.endsWith(".yml")) {
+                        readConfig(entry, file);
+                    }
+                }
+                case "dataset" -> {
+                    if (SAMPLE_EXTENSIONS.contains(extension)) {
+                        entry.setDatasetImages(entry.getDatasetImages() + 1);
+                    }
+                }
+                case "output" -> {
+                    if ("safetensors".equals(extension)) {
+                        entry.setCheckpointCount(entry.getCheckpointCount() + 1);
+                        entry.setCheckpointBytes(entry.getCheckpointBytes() + size);
+                    } else if (SAMPLE_EXTENSIONS.contains(extension)
+                            && relative.getParent() != null
+                            && "samples".equals(relative.getParent().getFileName().toString())) {
+                        long modified = Files.getLastModifiedTime(file).toMillis();
+                        if (modified > newestSampleTime) {
+                            newestSampleTime = modified;
+                            newestSample = relative;
+                        }
+                    }
+                }
+                case "logs" -> {
+                    if ("txt".equals(extension)) {
+                        readMetrics(entry, file);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        if (newestSample != null) {
+            entry.setThumbnail(newestSample.toString().replace('\\', '/'));
+        }
+        return entry;
+    }
+
+    private Instant parseTimestamp(String name, Path archiveFolder) throws IOException {
+        try {
+            return LocalDateTime.parse(name, ARCHIVE_FORMATTER).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            return Files.getLastModifiedTime(archiveFolder).toInstant();
+        }
+    }
+
+    private void readConfig(ArchiveEntry entry, Path configFile) {
+        try {
+            JsonNode config = yamlMapper.readTree(configFile.toFile()).path("config");
+            addIfPresent(entry.getJobs(), config.path("name").asText(null));
+            for (JsonNode process : config.path("process")) {
+                addIfPresent(entry.getTriggerWords(), process.path("trigger_word").asText(null));
+                addIfPresent(entry.getModels(), process.path("model").path("name_or_path").asText(null));
+                if (process.path("train").has("steps")) {
+                    entry.setTotalSteps(process.path("train").path("steps").asInt());
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Could not read archived config {}", configFile, e);
+        }
+    }
+
+    private static void addIfPresent(List<String> values, String value) {
+        if (value != null && !value.isBlank() && !values.contains(value)) {
+            values.add(value);
+        }
+    }
+
+    private void readMetrics(ArchiveEntry entry, Path logFile) throws IOException {
+        TrainingMetrics metrics = new TrainingMetrics();
+        try (FileChannel channel = FileChannel.open(logFile);
+             TrainingMetricsParser parser = new TrainingMetricsParser(metrics, () -> { })) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, LOG_TAIL_BYTES));
+            channel.read(buffer, size - buffer.capacity());
+            parser.write(buffer.array(), 0, buffer.position());
+            parser.write('\n');
+        }
+
+        TrainingMetrics.Snapshot snapshot = metrics.snapshot();
+        if (snapshot == null) {
+            return;
+        }
+        if (entry.getLastStep() == null || snapshot.step() > entry.getLastStep()) {
+            entry.setLastStep(snapshot.step());
+            entry.setFinalLoss(Float.isNaN(snapshot.loss()) ? null : snapshot.loss());
+            if (entry.getTotalSteps() == null) {
+                entry.setTotalSteps(snapshot.totalSteps());
+            }
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            Files.createDirectories(catalogFile.getParent());
+            Path tempFile = catalogFile.resolveSibling(catalogFile.getFileName() + ".tmp");
+            mapper.writeValue(tempFile.toFile(), new ArrayList<>(entries.values()));
+            Files.move(tempFile, catalogFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist archive catalog {}", catalogFile, e);
+        }
+    }
+}
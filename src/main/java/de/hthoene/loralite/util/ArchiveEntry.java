@@ -0,0 +1,47 @@
+package de.hthoene.loralite.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@Data
+public class ArchiveEntry {
+    private String name;
+    private Instant archivedAt;
+    private String location;
+
+    private List<String> jobs = new ArrayList<>();
+    private List<String> triggerWords = new ArrayList<>();
+    private List<String> models = new ArrayList<>();
+
+    private Integer totalSteps;
+    private Integer lastStep;
+    private Float finalLoss;
+
+    private int datasetImages;
+    private int checkpointCount;
+    private long checkpointBytes;
+    private long totalBytes;
+
+    private String thumbnail;
+
+    @JsonIgnore
+    public boolean matches(String filter) {
+        if (filter == null || filter.isBlank()) {
+            return true;
+        }
+        String query = filter.toLowerCase(Locale.ROOT);
+        return contains(name, query)
+                || jobs.stream().anyMatch(value -> contains(value, query))
+                || triggerWords.stream().anyMatch(value -> contains(value, query))
+                || models.stream().anyMatch(value -> contains(value, query));
+    }
+
+    private static boolean contains(String value, String query) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(query);
+    }
+}
@@ -1,48 +1,546 @@
 package de.hthoene.loralite.util;
 
+import de.hthoene.loralite.aitoolkit.AiToolkitService;
+import de.hthoene.loralite.aitoolkit.DatasetPreparation;
+import de.hthoene.loralite.aitoolkit.TrainingJob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @Service
 public class ArchiveService {
     private static final DateTimeFormatter ARCHIVE_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final long MAX_IMPORT_BYTES = 8L * 1024 * 1024 * 1024;
+    private static final int MAX_IMPORT_ENTRIES = 100_000;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+    private static final String BLOB_FOLDER = ".blobs";
+    private static final String MANIFEST_FILE = "manifest.sha256";
+    private static final String CATALOG_FILE = ".catalog.json";
+    private static final Set<String> COMPRESSED_EXTENSIONS =
+            Set.of("safetensors", "ckpt", "pt", "bin", "png", "jpg", "jpeg", "webp", "zip", "gz");
 
     private final Path configFolderPath;
     private final Path datasetFolderPath;
     private final Path outputFolderPath;
     private final Path logsFolderPath;
+    private final Path backupsFolderPath;
     private final Path archiveBasePath;
+    private final GpuMonitor gpuMonitor;
+    private final AiToolkitService aiToolkitService;
+    private final EventBroadcaster eventBroadcaster;
+    private final CaptionStore captionStore;
+    private final DatasetPreparation datasetPreparation;
+    private final BlobStore blobStore;
+    private final ArchiveCatalog catalog;
 
-    public ArchiveService(WorkspaceProperties workspaceProperties) {
+    private final ExecutorService archiveExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService deduplicationExecutor = Executors.newSingleThreadExecutor();
+
+    private volatile WorkflowEvent.ArchiveProgress progress;
+    private volatile boolean cancelRequested;
+    private volatile boolean stopping;
+    private boolean archiving;
+
+    private record Totals(long files, long bytes) {
+    }
+
+    private record MovedEntry(Path source, Path target, boolean directory) {
+    }
+
+    private class ArchiveRun {
+        private final List<MovedEntry> moved = new ArrayList<>();
+        private long filesTotal;
+        private long bytesTotal;
+        private long filesDone;
+        private long bytesDone;
+        private long lastPublished;
+        private String phase;
+
+        private void startPhase(String name, Totals totals) {
+            phase = name;
+            filesDone = 0;
+            bytesDone = 0;
+            filesTotal = totals.files();
+            bytesTotal = totals.bytes();
+            publish(WorkflowEvent.ArchiveProgress.State.RUNNING, phase);
+        }
+
+        private void advance(long files, long bytes) {
+            if (cancelRequested) {
+                throw new CancellationException("Archiving cancelled");
+            }
+            filesDone += files;
+            bytesDone += bytes;
+
+            long now = System.currentTimeMillis();
+            if (now - lastPublished >= PROGRESS_INTERVAL_MS) {
+                lastPublished = now;
+                publish(WorkflowEvent.ArchiveProgress.State.RUNNING, phase);
+            }
+        }
+
+        private void publish(WorkflowEvent.ArchiveProgress.State state, String message) {
+            progress = new WorkflowEvent.ArchiveProgress(state, filesDone, filesTotal, bytesDone, bytesTotal, message);
+            eventBroadcaster.broadcast(progress);
+        }
+    }
+
+    public ArchiveService(WorkspaceProperties workspaceProperties,
+                          GpuMonitor gpuMonitor,
+                          AiToolkitService aiToolkitService,
+                          EventBroadcaster eventBroadcaster,
+                          CaptionStore captionStore,
+                          DatasetPreparation datasetPreparation) {
         this.configFolderPath = workspaceProperties.getConfigsPath();
         this.datasetFolderPath = workspaceProperties.getDatasetPath();
         this.outputFolderPath = workspaceProperties.getOutputPath();
         this.logsFolderPath = workspaceProperties.getLogsPath();
+        this.backupsFolderPath = workspaceProperties.getBackupsPath();
         this.archiveBasePath = workspaceProperties.getArchivePath();
+        this.gpuMonitor = gpuMonitor;
+        this.aiToolkitService = aiToolkitService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.captionStore = captionStore;
+        this.datasetPreparation = datasetPreparation;
+        this.blobStore = new BlobStore(archiveBasePath.resolve(BLOB_FOLDER));
+        this.catalog = new ArchiveCatalog(archiveBasePath.resolve(CATALOG_FILE));
+    }
+
+    @PostConstruct
+    void reconcileCatalog() {
+        archiveExecutor.execute(() -> {
+            try {
+                catalog.reconcile(listArchives());
+            } catch (IOException e) {
+                log.warn("Could not reconcile archive catalog", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        cancelRequested = true;
+        stopping = true;
+        archiveExecutor.shutdown();
+        deduplicationExecutor.shutdown();
+    }
+
+    public synchronized void startArchive() {
+        if (archiving) {
+            throw new IllegalStateException("An archive is already in progress");
+        }
+        // no job can be queued or started until finish() hands the workspace back
+        aiToolkitService.beginArchive();
+
+        archiving = true;
+        cancelRequested = false;
+        archiveExecutor.execute(this::runArchive);
+    }
+
+    public void cancelArchive() {
+        cancelRequested = true;
+    }
+
+    public synchronized boolean isArchiving() {
+        return archiving;
+    }
+
+    public WorkflowEvent.ArchiveProgress getProgress() {
+        return progress;
+    }
+
+    public ArchiveCatalog getCatalog() {
+        return catalog;
+    }
+
+    public long collectGarbage() throws IOException {
+        return blobStore.collectGarbage();
+    }
+
+    public Path getArchiveFolder(String name) throws IOException {
+        Optional<String> location = catalog.find(name).map(ArchiveEntry::getLocation);
+        return location.isPresent() ? Path.of(location.get()) : resolveArchive(name);
+    }
+
+    private List<String> listArchives() throws IOException {
+        if (!Files.isDirectory(archiveBasePath)) {
+            return List.of();
+        }
+        try (Stream<Path> folders = Files.list(archiveBasePath)) {
+            return folders
+                    .filter(Files::isDirectory)
+                    .map(folder -> folder.getFileName().toString())
+                    .filter(name -> !name.startsWith("."))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+    }
+
+    public void exportArchive(String name, OutputStream out) throws IOException {
+        Path archiveFolder = getArchiveFolder(name);
+        if (!Files.isDirectory(archiveFolder)) {
+            throw new NoSuchFileException(archiveFolder.toString());
+        }
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(archiveFolder)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            zip.setLevel(COMPRESSED_EXTENSIONS.contains(extension)
+                    ? Deflater.NO_COMPRESSION
+                    : Deflater.DEFAULT_COMPRESSION);
+
+            String entryName = name + "/" + archiveFolder.relativize(file).toString().replace('\\', '/');
+            ZipEntry entry = new ZipEntry(entryName);
+            entry.setLastModifiedTime(Files.getLastModifiedTime(file));
+            zip.putNextEntry(entry);
+            Files.copy(file, zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    public String importArchive(InputStream in) throws IOException {
+        Files.createDirectories(archiveBasePath);
+        Path importFolder = archiveBasePath.resolve(".import-" + UUID.randomUUID());
+        Files.createDirectories(importFolder);
+
+        try {
+            String name = null;
+            long remainingBytes = MAX_IMPORT_BYTES;
+            int entries = 0;
+            try (ZipInputStream zip = new ZipInputStream(in)) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (++entries > MAX_IMPORT_ENTRIES) {
+                        throw new IOException("Archive has more than " + MAX_IMPORT_ENTRIES + " entries");
+                    }
+                    Path target = importFolder.resolve(entry.getName()).normalize();
+                    if (!target.startsWith(importFolder) || target.equals(importFolder)) {
+                        throw new IOException("Invalid archive entry: " + entry.getName());
+                    }
+
+                    String topFolder = importFolder.relativize(target).getName(0).toString();
+                    if (name == null) {
+                        name = topFolder;
+                        if (Files.exists(resolveArchive(name))) {
+                            throw new FileAlreadyExistsException(resolveArchive(name).toString());
+                        }
+                    } else if (!name.equals(topFolder)) {
+                        throw new IOException("Archive must contain a single top level folder");
+                    }
+
+                    if (entry.isDirectory()) {
+                        Files.createDirectories(target);
+                    } else {
+                        Files.createDirectories(target.getParent());
+                        remainingBytes = copyBounded(zip, target, remainingBytes);
+                    }
+                }
+            }
+
+            if (name == null || name.startsWith(".")) {
+                throw new IOException("Archive is empty or has an invalid name");
+            }
+
+            Path archiveFolder = resolveArchive(name);
+            if (Files.exists(archiveFolder)) {
+                throw new FileAlreadyExistsException(archiveFolder.toString());
+            }
+            Files.move(importFolder.resolve(name), archiveFolder, StandardCopyOption.ATOMIC_MOVE);
+
+            catalog.add(archiveFolder);
+            scheduleDeduplication(archiveFolder);
+            log.info("Imported archive {}", archiveFolder);
+            return name;
+        } finally {
+            if (Files.exists(importFolder)) {
+                deleteDirectory(importFolder);
+            }
+        }
+    }
+
+    private static long copyBounded(InputStream in, Path target, long remaining) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        try (OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                remaining -= read;
+                if (remaining < 0) {
+                    throw new IOException("Archive expands to more than "
+                            + MAX_IMPORT_BYTES / (1024 * 1024 * 1024) + " GB");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return remaining;
+    }
+
+    private Path resolveArchive(String name) throws IOException {
+        Path archiveFolder = archiveBasePath.resolve(name).normalize();
+        if (!archiveBasePath.equals(archiveFolder.getParent())) {
+            throw new IOException("Invalid archive name: " + name);
+        }
+        return archiveFolder;
     }
 
-    public void archiveAllLatestFolders() throws IOException {
+    private void runArchive() {
+        ArchiveRun run = new ArchiveRun();
         String timestamp = LocalDateTime.now().format(ARCHIVE_FORMATTER);
         Path archiveFolder = archiveBasePath.resolve(timestamp);
-        Files.createDirectories(archiveFolder);
 
-        archiveLatestFolder(configFolderPath, archiveFolder.resolve("configs"));
-        archiveLatestFolder(datasetFolderPath, archiveFolder.resolve("dataset"));
-        archiveLatestFolder(outputFolderPath, archiveFolder.resolve("output"));
-        archiveLatestLogFile(archiveFolder.resolve("logs.txt"));
+        try {
+            // debounced caption edits would otherwise land in the recreated dataset/latest or get lost
+            captionStore.flushAll();
+            // latents worth keeping are already in the latent cache folder, the working copies only cost archive space
+            datasetPreparation.removeLatentCaches(datasetFolderPath.resolve("latest"));
+
+            List<Path> sources = List.of(
+                    configFolderPath.resolve("latest"),
+                    datasetFolderPath.resolve("latest"),
+                    outputFolderPath.resolve("latest"),
+                    logsFolderPath.resolve("latest"),
+                    logsFolderPath.resolve("latest.txt"),
+                    backupsFolderPath.resolve("latest"));
+            long files = 0;
+            long bytes = 0;
+            for (Path source : sources) {
+                Totals totals = measure(source);
+                files += totals.files();
+                bytes += totals.bytes();
+            }
+            run.startPhase("Moving", new Totals(files, bytes));
+
+            Files.createDirectories(archiveFolder);
+
+            archiveLatestFolder(run, configFolderPath, archiveFolder.resolve("configs"));
+            archiveLatestFolder(run, datasetFolderPath, archiveFolder.resolve("dataset"));
+            archiveLatestFolder(run, outputFolderPath, archiveFolder.resolve("output"));
+            archiveLatestFolder(run, logsFolderPath, archiveFolder.resolve("logs"));
+            archiveLatestLogFile(run, archiveFolder.resolve("logs.txt"));
+            archiveLatestFolder(run, backupsFolderPath, archiveFolder.resolve("backups"));
+            writeGpuHistory(archiveFolder.resolve("gpu-history.csv"));
+
+            catalog.add(archiveFolder);
+            log.info("Archived latest workflow to {}", archiveFolder);
+            finish(run, WorkflowEvent.ArchiveProgress.State.COMPLETED, null);
+            scheduleDeduplication(archiveFolder);
+        } catch (CancellationException e) {
+            log.info("Archiving to {} cancelled, rolling back", archiveFolder);
+            rollback(run, archiveFolder);
+            finish(run, WorkflowEvent.ArchiveProgress.State.CANCELLED, null);
+        } catch (IOException | RuntimeException e) {
+            log.error("Archiving to {} failed, rolling back", archiveFolder, e);
+            rollback(run, archiveFolder);
+            finish(run, WorkflowEvent.ArchiveProgress.State.FAILED, e.getMessage());
+        }
+    }
+
+    // only the samples recorded while the archived jobs ran belong to this archive
+    private void writeGpuHistory(Path file) throws IOException {
+        Path archivedLogs = logsFolderPath.resolve("latest");
+        List<TrainingJob> jobs = aiToolkitService.getJobs().stream()
+                .filter(job -> job.getStartedAt() != null && job.getLogFile() != null)
+                .filter(job -> Path.of(job.getLogFile()).startsWith(archivedLogs))
+                .toList();
+        if (jobs.isEmpty()) {
+            return;
+        }
+        long from = jobs.stream().mapToLong(job -> job.getStartedAt().toEpochMilli()).min().orElseThrow();
+        long to = jobs.stream()
+                .mapToLong(job -> job.getFinishedAt() != null ? job.getFinishedAt().toEpochMilli() : System.currentTimeMillis())
+                .max()
+                .orElseThrow();
+        gpuMonitor.getHistory().writeCsv(file, from, to);
+    }
+
+    // hashing reads every byte of the checkpoints, so it runs after the archive is complete and one archive at a time
+    private void scheduleDeduplication(Path archiveFolder) {
+        deduplicationExecutor.execute(() -> {
+            try {
+                deduplicate(archiveFolder);
+            } catch (NoSuchFileException e) {
+                log.info("Archive {} was removed before it could be deduplicated", archiveFolder);
+            } catch (IOException e) {
+                log.warn("Could not deduplicate {}, keeping full copies", archiveFolder, e);
+            }
+        });
+    }
+
+    private void deduplicate(Path archiveFolder) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(archiveFolder)) {
+            files = paths
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !file.equals(archiveFolder.resolve(MANIFEST_FILE)))
+                    .sorted()
+                    .toList();
+        }
+
+        long savedBytes = 0;
+        boolean linksSupported = true;
+        try (BufferedWriter manifest = Files.newBufferedWriter(archiveFolder.resolve(MANIFEST_FILE))) {
+            for (Path file : files) {
+                if (stopping) {
+                    log.info("Stopped deduplicating {}, the rest keeps full copies", archiveFolder);
+                    return;
+                }
+                long size = Files.size(file);
+                Optional<String> known = blobStore.knownHash(file);
+                String hash = known.isPresent() ? known.get() : BlobStore.hash(file);
+                manifest.write(hash + "  " + archiveFolder.relativize(file).toString().replace('\\', '/'));
+                manifest.newLine();
+
+                if (known.isPresent()) {
+                    savedBytes += size;
+                } else if (linksSupported && size > 0) {
+                    try {
+                        if (blobStore.deduplicate(file, hash)) {
+                            savedBytes += size;
+                        }
+                    } catch (NoSuchFileException e) {
+                        log.debug("{} disappeared while deduplicating", file, e);
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        log.warn("Archive file system does not support hard links, keeping full copies in {}",
+                                archiveFolder, e);
+                        linksSupported = false;
+                    }
+                }
+            }
+        }
+
+        log.info("Deduplicated {} against the blob store, {} MB shared with earlier archives",
+                archiveFolder, savedBytes / (1024 * 1024));
+    }
+
+    private void finish(ArchiveRun run, WorkflowEvent.ArchiveProgress.State state, String message) {
+        synchronized (this) {
+            archiving = false;
+        }
+        aiToolkitService.endArchive();
+        run.publish(state, message);
+    }
+
+    private static Totals measure(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            return new Totals(1, Files.size(path));
+        }
+        if (!Files.isDirectory(path)) {
+            return new Totals(0, 0);
+        }
+        long files = 0;
+        long bytes = 0;
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                files++;
+                bytes += Files.size(file);
+            }
+        }
+        return new Totals(files, bytes);
+    }
+
+    private void rollback(ArchiveRun run, Path archiveFolder) {
+        boolean restoredAll = true;
+        for (MovedEntry entry : run.moved.reversed()) {
+            try {
+                restoredAll &= entry.directory()
+                        ? restoreFolder(entry.target(), entry.source())
+                        : restoreFile(entry.target(), entry.source());
+                log.info("Restored {}", entry.source());
+            } catch (IOException e) {
+                log.error("Could not restore {} from {}", entry.source(), entry.target(), e);
+                restoredAll = false;
+            }
+        }
 
-        log.info("Archived latest workflow to {}", archiveFolder);
+        if (!restoredAll) {
+            log.warn("Keeping incomplete archive {}, it still holds files that could not be restored", archiveFolder);
+            return;
+        }
+        if (Files.exists(archiveFolder)) {
+            try {
+                deleteDirectory(archiveFolder);
+            } catch (IOException e) {
+                log.warn("Could not remove incomplete archive {}", archiveFolder, e);
+            }
+        }
     }
 
-    private void archiveLatestFolder(Path baseFolder, Path targetFolder) throws IOException {
+    private boolean restoreFolder(Path archived, Path latestFolder) throws IOException {
+        if (!Files.exists(latestFolder)) {
+            move(archived, latestFolder, true, null);
+            return true;
+        }
+
+        // latest was recreated and may have been written to meanwhile, merge the archived files back into it
+        boolean restoredAll = true;
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(archived)) {
+            files = paths.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            Path target = latestFolder.resolve(archived.relativize(file).toString());
+            if (Files.exists(target)) {
+                log.warn("{} was written again while archiving, keeping the archived copy {}", target, file);
+                restoredAll = false;
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(file, target);
+        }
+        if (restoredAll) {
+            deleteDirectory(archived);
+        }
+        return restoredAll;
+    }
+
+    private boolean restoreFile(Path archived, Path latestFile) throws IOException {
+        if (Files.exists(latestFile) && Files.size(latestFile) > 0) {
+            // keep lines logged since the move after the archived ones
+            try (OutputStream out = Files.newOutputStream(archived, StandardOpenOption.APPEND)) {
+                Files.copy(latestFile, out);
+            }
+        }
+        Files.deleteIfExists(latestFile);
+        move(archived, latestFile, false, null);
+        return true;
+    }
+
+    private void archiveLatestFolder(ArchiveRun run, Path baseFolder, Path targetFolder) throws IOException {
         Path latestFolder = baseFolder.resolve("latest");
 
         if (!Files.exists(latestFolder)) {
@@ -60,14 +558,13 @@ public class ArchiveService {
             Files.createDirectories(parent);
         }
 
-        copyDirectory(latestFolder, targetFolder);
-        deleteDirectory(latestFolder);
+        move(latestFolder, targetFolder, true, run);
         Files.createDirectories(latestFolder);
 
         log.info("Archived {} to {}", latestFolder, targetFolder);
     }
 
-    private void archiveLatestLogFile(Path targetFile) throws IOException {
+    private void archiveLatestLogFile(ArchiveRun run, Path targetFile) throws IOException {
         Path latestLogFile = logsFolderPath.resolve("latest.txt");
 
         if (!Files.exists(latestLogFile)) {
@@ -85,8 +582,7 @@ public class ArchiveService {
             Files.createDirectories(parent);
         }
 
-        Files.copy(latestLogFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
-        Files.delete(latestLogFile);
+        move(latestLogFile, targetFile, false, run);
         Files.createFile(latestLogFile);
 
         log.info("Archived {} to {}", latestLogFile, targetFile);
@@ -98,7 +594,48 @@ public class ArchiveService {
         }
     }
 
-    private void copyDirectory(Path source, Path target) throws IOException {
+    // the entry is recorded as soon as the source is gone, so a cancellation right after still rolls it back
+    private void move(Path source, Path target, boolean directory, ArchiveRun run) throws IOException {
+        Totals totals = run != null ? measure(source) : null;
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.info("Archive is on a different file system, copying {} instead of moving", source);
+            try {
+                if (directory) {
+                    copyDirectory(source, target, run);
+                } else {
+                    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException copyFailed) {
+                // the source is still complete, drop the partial copy
+                if (Files.isDirectory(target)) {
+                    deleteDirectory(target);
+                } else {
+                    Files.deleteIfExists(target);
+                }
+                throw copyFailed;
+            }
+            if (run != null) {
+                run.moved.add(new MovedEntry(source, target, directory));
+            }
+            if (directory) {
+                deleteDirectory(source);
+            } else {
+                Files.delete(source);
+            }
+            if (run != null && !directory) {
+                run.advance(1, totals.bytes());
+            }
+            return;
+        }
+        if (run != null) {
+            run.moved.add(new MovedEntry(source, target, directory));
+            run.advance(totals.files(), totals.bytes());
+        }
+    }
+
+    private void copyDirectory(Path source, Path target, ArchiveRun run) throws IOException {
         Files.walkFileTree(source, new SimpleFileVisitor<>() {
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
@@ -113,6 +650,9 @@ public class ArchiveService {
                     throws IOException {
                 Path targetFile = target.resolve(source.relativize(file));
                 Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING);
+                if (run != null) {
+                    run.advance(1, attrs.size());
+                }
                 return FileVisitResult.CONTINUE;
             }
         });
@@ -0,0 +1,79 @@
+package de.hthoene.loralite.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+public class BkTree<T> {
+
+    private static class Node<T> {
+        private final long hash;
+        private final List<T> values = new ArrayList<>(1);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Node<T>[] children = new Node[Long.SIZE + 1];
+
+        private Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    private Node<T> root;
+    private int size;
+
+    public void add(long hash, T value) {
+        size++;
+        if (root == null) {
+            root = new Node<>(hash);
+            root.values.add(value);
+            return;
+        }
+
+        Node<T> node = root;
+        while (true) {
+            int distance = PerceptualHash.distance(hash, node.hash);
+            if (distance == 0) {
+                node.values.add(value);
+                return;
+            }
+            Node<T> child = node.children[distance];
+            if (child == null) {
+                child = new Node<>(hash);
+                child.values.add(value);
+                node.children[distance] = child;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public List<T> search(long hash, int maxDistance) {
+        List<T> result = new ArrayList<>();
+        if (root == null) {
+            return result;
+        }
+
+        Deque<Node<T>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.pop();
+            int distance = PerceptualHash.distance(hash, node.hash);
+            if (distance <= maxDistance) {
+                result.addAll(node.values);
+            }
+            // triangle inequality: only children within maxDistance of our distance can hold matches
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(Long.SIZE, distance + maxDistance);
+            for (int i = from; i <= to; i++) {
+                if (node.children[i] != null) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+}
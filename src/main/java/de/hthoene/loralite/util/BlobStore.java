@@ -0,0 +1,142 @@
+package de.hthoene.loralite.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@Slf4j
+public class BlobStore {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path blobFolder;
+    private Map<BlobKey, String> knownBlobs;
+
+    // a file hard-linked to a blob shares its inode, size and modification time
+    private record BlobKey(Object fileKey, long size, long modified) {
+        private static BlobKey of(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.fileKey() != null
+                    ? new BlobKey(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis())
+                    : null;
+        }
+    }
+
+    public BlobStore(Path blobFolder) {
+        this.blobFolder = blobFolder;
+    }
+
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Path blobPath(String hash) {
+        return blobFolder.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    // lets a pass skip reading files that already are a blob, without hashing anything
+    public synchronized Optional<String> knownHash(Path file) throws IOException {
+        BlobKey key = BlobKey.of(file);
+        return key != null ? Optional.ofNullable(knownBlobs().get(key)) : Optional.empty();
+    }
+
+    public synchronized boolean deduplicate(Path file, String hash) throws IOException {
+        Path blob = blobPath(hash);
+        Files.createDirectories(blob.getParent());
+
+        if (!Files.exists(blob)) {
+            try {
+                Files.createLink(blob, file);
+                remember(blob, hash);
+                return false;
+            } catch (FileAlreadyExistsException e) {
+                log.debug("Blob {} was stored concurrently", hash);
+            }
+        }
+
+        if (Files.isSameFile(blob, file)) {
+            return true;
+        }
+
+        Path link = file.resolveSibling(file.getFileName() + ".link");
+        Files.deleteIfExists(link);
+        Files.createLink(link, blob);
+        Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        remember(blob, hash);
+        return true;
+    }
+
+    public synchronized long collectGarbage() throws IOException {
+        if (!Files.isDirectory(blobFolder)) {
+            return 0;
+        }
+
+        long freed = 0;
+        try (Stream<Path> blobs = Files.walk(blobFolder)) {
+            for (Path blob : (Iterable<Path>) blobs.filter(Files::isRegularFile)::iterator) {
+                try {
+                    if ((int) Files.getAttribute(blob, "unix:nlink") <= 1) {
+                        long size = Files.size(blob);
+                        Files.delete(blob);
+                        freed += size;
+                    }
+                } catch (NoSuchFileException e) {
+                    log.debug("Blob {} was already removed", blob.getFileName());
+                }
+            }
+        }
+        knownBlobs = null;
+        return freed;
+    }
+
+    private Map<BlobKey, String> knownBlobs() throws IOException {
+        if (knownBlobs == null) {
+            knownBlobs = new HashMap<>();
+            if (Files.isDirectory(blobFolder)) {
+                try (Stream<Path> blobs = Files.walk(blobFolder)) {
+                    for (Path blob : (Iterable<Path>) blobs.filter(Files::isRegularFile)::iterator) {
+                        remember(blob, blob.getFileName().toString());
+                    }
+                }
+            }
+        }
+        return knownBlobs;
+    }
+
+    private void remember(Path blob, String hash) throws IOException {
+        if (knownBlobs == null) {
+            return;
+        }
+        BlobKey key = BlobKey.of(blob);
+        if (key != null) {
+            knownBlobs.put(key, hash);
+        }
+    }
+}
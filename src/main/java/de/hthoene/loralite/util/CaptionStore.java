@@ -0,0 +1,132 @@
+package de.hthoene.loralite.util;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
+@Service
+public class CaptionStore {
+    private static final long DEBOUNCE_MS = 750;
+    private static final long FLUSH_TIMEOUT_SECONDS = 5;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+            .name("caption-writer")
+            .daemon(true)
+            .factory());
+
+    private final Map<Path, PendingWrite> pending = new HashMap<>();
+    private final Map<Path, PendingWrite> writing = new HashMap<>();
+
+    private static class PendingWrite {
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private String text;
+        private ScheduledFuture<?> task;
+    }
+
+    public synchronized String read(Path caption) throws IOException {
+        PendingWrite write = pending.getOrDefault(caption, writing.get(caption));
+        if (write != null) {
+            return write.text;
+        }
+        return Files.exists(caption) ? Files.readString(caption) : "";
+    }
+
+    public synchronized CompletableFuture<Void> write(Path caption, String text) {
+        PendingWrite write = pending.computeIfAbsent(caption, _ -> new PendingWrite());
+        write.text = text;
+        if (write.task != null) {
+            write.task.cancel(false);
+        }
+        write.task = scheduler.schedule(() -> persist(caption, write), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        return write.done;
+    }
+
+    public synchronized CompletableFuture<Void> flush(Path caption) {
+        PendingWrite write = pending.get(caption);
+        if (write == null) {
+            PendingWrite inFlight = writing.get(caption);
+            return inFlight != null ? inFlight.done : CompletableFuture.completedFuture(null);
+        }
+        write.task.cancel(false);
+        scheduler.execute(() -> persist(caption, write));
+        return write.done;
+    }
+
+    public synchronized void discard(Path caption) {
+        PendingWrite write = pending.remove(caption);
+        if (write != null) {
+            write.task.cancel(false);
+            write.done.complete(null);
+        }
+    }
+
+    public void flushAll() throws IOException {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        synchronized (this) {
+            List.copyOf(pending.keySet()).forEach(caption -> writes.add(flush(caption)));
+            writing.values().forEach(write -> writes.add(write.done));
+        }
+        try {
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new))
+                    .get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not write all captions", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Captions were not written within " + FLUSH_TIMEOUT_SECONDS + " seconds", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing captions", e);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        try {
+            flushAll();
+        } catch (IOException e) {
+            log.warn("Not all captions could be written before shutdown", e);
+        }
+        scheduler.shutdown();
+    }
+
+    private void persist(Path caption, PendingWrite write) {
+        synchronized (this) {
+            if (pending.get(caption) != write) {
+                return;
+            }
+            pending.remove(caption);
+            writing.put(caption, write);
+        }
+
+        try {
+            Path tempFile = caption.resolveSibling("." + caption.getFileName() + ".tmp");
+            Files.writeString(tempFile, write.text);
+            Files.move(tempFile, caption, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            write.done.complete(null);
+        } catch (IOException e) {
+            log.warn("Could not write caption {}", caption, e);
+            write.done.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                writing.remove(caption, write);
+            }
+        }
+    }
+}
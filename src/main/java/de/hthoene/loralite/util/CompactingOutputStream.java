@@ -0,0 +1,78 @@
+package de.hthoene.loralite.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class CompactingOutputStream extends FilterOutputStream {
+    private final long progressIntervalMs;
+    private final ByteArrayOutputStream segment = new ByteArrayOutputStream();
+
+    private boolean carriageReturnPending;
+    private boolean segmentIsOverwrite;
+    private boolean progressWritten;
+    private long lastProgressWrite;
+
+    public CompactingOutputStream(OutputStream out, long progressIntervalMs) {
+        super(out);
+        this.progressIntervalMs = progressIntervalMs;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        if (b == '\n') {
+            commitSegment();
+        } else if (b == '\r') {
+            carriageReturnPending = true;
+        } else {
+            if (carriageReturnPending) {
+                endProgressSegment();
+            }
+            segment.write(b);
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(b[i]);
+        }
+    }
+
+    private void commitSegment() throws IOException {
+        if (progressWritten || segmentIsOverwrite) {
+            out.write('\r');
+        }
+        segment.write('\n');
+        segment.writeTo(out);
+        segment.reset();
+        carriageReturnPending = false;
+        segmentIsOverwrite = false;
+        progressWritten = false;
+    }
+
+    private void endProgressSegment() throws IOException {
+        long now = System.currentTimeMillis();
+        if (segment.size() > 0 && now - lastProgressWrite >= progressIntervalMs) {
+            if (progressWritten || segmentIsOverwrite) {
+                out.write('\r');
+            }
+            segment.writeTo(out);
+            out.flush();
+            lastProgressWrite = now;
+            progressWritten = true;
+        }
+        segment.reset();
+        carriageReturnPending = false;
+        segmentIsOverwrite = true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (segment.size() > 0) {
+            commitSegment();
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,268 @@
+package de.hthoene.loralite.util;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class DatasetIndex {
+    public static final String[] IMAGE_EXTENSIONS = { "png", "jpg", "jpeg", "webp" };
+
+    private static final long POLL_MS = 1000;
+    private static final long SETTLE_MS = 200;
+
+    public record DatasetItem(Path image,
+                              Path caption,
+                              long size,
+                              long modified,
+                              int width,
+                              int height,
+                              String hash) {
+    }
+
+    private final Path datasetPath;
+    private final EventBroadcaster eventBroadcaster;
+    private final ThumbnailService thumbnailService;
+    private final Map<Path, DatasetItem> items = new ConcurrentHashMap<>();
+    private final Map<String, Long> perceptualHashes = new ConcurrentHashMap<>();
+
+    private volatile List<DatasetItem> sortedItems = List.of();
+    private Thread thread;
+
+    public DatasetIndex(WorkspaceProperties workspaceProperties,
+                        EventBroadcaster eventBroadcaster,
+                        ThumbnailService thumbnailService) {
+        this.datasetPath = workspaceProperties.getDatasetPath().resolve("latest");
+        this.eventBroadcaster = eventBroadcaster;
+        this.thumbnailService = thumbnailService;
+    }
+
+    @PostConstruct
+    void start() {
+        thread = Thread.ofVirtual()
+                .name("dataset-index")
+                .start(this::run);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public Path getDatasetPath() {
+        return datasetPath;
+    }
+
+    public List<DatasetItem> list() {
+        return sortedItems;
+    }
+
+    public Optional<DatasetItem> get(Path image) {
+        return Optional.ofNullable(items.get(image));
+    }
+
+    public OptionalLong perceptualHash(DatasetItem item) {
+        Long perceptualHash = perceptualHashes.get(item.hash());
+        return perceptualHash != null ? OptionalLong.of(perceptualHash) : OptionalLong.empty();
+    }
+
+    public void putPerceptualHash(DatasetItem item, long perceptualHash) {
+        perceptualHashes.put(item.hash(), perceptualHash);
+    }
+
+    public static boolean isImage(Path file) {
+        return FilenameUtils.isExtension(file.getFileName().toString().toLowerCase(), IMAGE_EXTENSIONS);
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+                Files.createDirectories(datasetPath);
+                Object directoryKey = Files.readAttributes(datasetPath, BasicFileAttributes.class).fileKey();
+                datasetPath.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                rescan();
+                watch(watchService, directoryKey);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.warn("Could not watch dataset folder {}, retrying", datasetPath, e);
+                try {
+                    Thread.sleep(POLL_MS * 5);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void watch(WatchService watchService, Object directoryKey) throws InterruptedException, IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key = watchService.poll(POLL_MS, TimeUnit.MILLISECONDS);
+            if (key == null) {
+                // the folder is moved away and recreated when a workflow is archived
+                if (!Files.isDirectory(datasetPath)
+                        || !Objects.equals(directoryKey,
+                        Files.readAttributes(datasetPath, BasicFileAttributes.class).fileKey())) {
+                    return;
+                }
+                continue;
+            }
+
+            Thread.sleep(SETTLE_MS);
+            Set<Path> changed = new HashSet<>();
+            boolean overflow = false;
+            do {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        changed.add(datasetPath.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+                key = watchService.poll();
+            } while (key != null);
+
+            if (overflow) {
+                rescan();
+            } else {
+                update(changed);
+            }
+        }
+    }
+
+    private void rescan() throws IOException {
+        Set<Path> present = new HashSet<>();
+        try (Stream<Path> files = Files.list(datasetPath)) {
+            files.filter(DatasetIndex::isImage).forEach(present::add);
+        }
+        Set<Path> changed = new HashSet<>(present);
+        changed.addAll(items.keySet());
+        update(changed);
+    }
+
+    private void update(Set<Path> paths) {
+        Set<Path> images = new HashSet<>();
+        for (Path path : paths) {
+            if (isImage(path)) {
+                images.add(path);
+            } else if (path.getFileName().toString().endsWith(".txt")) {
+                String baseName = FilenameUtils.getBaseName(path.getFileName().toString());
+                for (String extension : IMAGE_EXTENSIONS) {
+                    Path image = path.resolveSibling(baseName + "." + extension);
+                    if (items.containsKey(image) || Files.exists(image)) {
+                        images.add(image);
+                    }
+                }
+            }
+        }
+
+        Set<Path> updated = new HashSet<>();
+        Set<Path> prefetch = new HashSet<>();
+        boolean structural = false;
+        for (Path image : images) {
+            DatasetItem previous = items.get(image);
+            DatasetItem current = index(image, previous);
+            if (previous != null && (current == null || !previous.hash().equals(current.hash()))) {
+                perceptualHashes.remove(previous.hash());
+            }
+            if (current == null) {
+                structural |= items.remove(image) != null;
+            } else if (!current.equals(previous)) {
+                structural |= previous == null;
+                items.put(image, current);
+                if (previous == null || previous.modified() != current.modified()) {
+                    prefetch.add(image);
+                }
+            } else {
+                continue;
+            }
+            updated.add(image);
+        }
+
+        if (updated.isEmpty()) {
+            return;
+        }
+        sortedItems = items.values().stream()
+                .sorted(Comparator.comparing(item -> item.image().getFileName().toString()))
+                .toList();
+        thumbnailService.prefetch(prefetch);
+        eventBroadcaster.broadcast(new WorkflowEvent.DatasetChanged(Set.copyOf(updated), structural));
+    }
+
+    private DatasetItem index(Path image, DatasetItem previous) {
+        try {
+            if (!Files.isRegularFile(image)) {
+                return null;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(image, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            Path caption = image.resolveSibling(FilenameUtils.getBaseName(image.getFileName().toString()) + ".txt");
+            Path existingCaption = Files.exists(caption) ? caption : null;
+
+            if (previous != null && previous.modified() == modified && previous.size() == attributes.size()) {
+                return new DatasetItem(image, existingCaption, previous.size(), modified,
+                        previous.width(), previous.height(), previous.hash());
+            }
+
+            int[] dimensions = readDimensions(image);
+            return new DatasetItem(image, existingCaption, attributes.size(), modified,
+                    dimensions[0], dimensions[1], BlobStore.hash(image));
+        } catch (IOException e) {
+            log.debug("Could not index dataset image {}", image, e);
+            return null;
+        }
+    }
+
+    public static int[] readDimensions(Path image) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return new int[] { 0, 0 };
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package de.hthoene.loralite.util;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+@Slf4j
+@Service
+public class DatasetUploadService {
+    private static final long MAX_CAPTION_BYTES = 64 * 1024;
+    private static final long MAX_PIXELS = 64L * 1024 * 1024;
+    private static final long MAX_FILE_BYTES = 512L * 1024 * 1024;
+    private static final long MAX_EXTRACTED_BYTES = 8L * 1024 * 1024 * 1024;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+    private static final Set<String> DATASET_EXTENSIONS = Set.of("png", "jpg", "jpeg", "webp", "txt");
+
+    public enum Status {
+        ACCEPTED,
+        RESIZED,
+        REJECTED
+    }
+
+    public record UploadResult(String fileName, Status status, String message) {
+    }
+
+    // archives and folders can expand far beyond the request size, so every import gets a byte budget
+    private static class ExtractionBudget {
+        private long remaining = MAX_EXTRACTED_BYTES;
+    }
+
+    private final Path datasetPath;
+    private final Path stagingPath;
+    private final Path importsPath;
+    private final ExecutorService workers = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            Thread.ofPlatform().name("dataset-upload-", 0).daemon(true).factory());
+
+    public DatasetUploadService(WorkspaceProperties workspaceProperties) {
+        this.datasetPath = workspaceProperties.getDatasetPath().resolve("latest");
+        this.stagingPath = workspaceProperties.getDatasetPath().resolve(".staging");
+        this.importsPath = workspaceProperties.getImportsPath();
+    }
+
+    public Path getImportsPath() {
+        return importsPath;
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
+    public CompletableFuture<UploadResult> upload(String fileName, InputStream in, Integer maxEdge) {
+        String name = Path.of(fileName).getFileName().toString();
+        try {
+            // a single gzipped file, e.g. captions.txt.gz, is stored under its inner name
+            if (name.toLowerCase(Locale.ROOT).endsWith(".gz")) {
+                return receive(name.substring(0, name.length() - 3), new GZIPInputStream(in), maxEdge,
+                        new ExtractionBudget());
+            }
+            return receive(name, in, maxEdge, new ExtractionBudget());
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(new UploadResult(name, Status.REJECTED, e.getMessage()));
+        }
+    }
+
+    // only a spent budget is thrown, an oversized single file is rejected and the import goes on
+    private CompletableFuture<UploadResult> receive(String fileName, InputStream in, Integer maxEdge,
+                                                    ExtractionBudget budget) throws IOException {
+        String name = Path.of(fileName).getFileName().toString();
+        Path staged = null;
+        try {
+            Files.createDirectories(stagingPath);
+            staged = stagingPath.resolve(UUID.randomUUID() + "-" + name);
+            copyBounded(in, staged, budget);
+        } catch (IOException e) {
+            log.warn("Could not receive upload {}", name, e);
+            if (staged != null) {
+                Files.deleteIfExists(staged);
+            }
+            if (budget.remaining < 0) {
+                throw e;
+            }
+            return CompletableFuture.completedFuture(new UploadResult(name, Status.REJECTED, e.getMessage()));
+        }
+        Path received = staged;
+        return CompletableFuture.supplyAsync(() -> process(name, received, maxEdge), workers);
+    }
+
+    private static void copyBounded(InputStream in, Path target, ExtractionBudget budget) throws IOException {
+        long written = 0;
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        try (OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                written += read;
+                budget.remaining -= read;
+                if (budget.remaining < 0) {
+                    throw new IOException("import expands to more than "
+                            + MAX_EXTRACTED_BYTES / (1024 * 1024 * 1024) + " GB");
+                }
+                if (written > MAX_FILE_BYTES) {
+                    throw new IOException("file larger than " + MAX_FILE_BYTES / (1024 * 1024) + " MB");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    public static boolean isArchive(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    public List<CompletableFuture<UploadResult>> ingestArchive(String fileName, InputStream in, Integer maxEdge)
+            throws IOException {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        List<CompletableFuture<UploadResult>> results = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        ExtractionBudget budget = new ExtractionBudget();
+
+        // entries are staged one after another straight from the request stream and validated in parallel
+        try (ArchiveInputStream<? extends ArchiveEntry> archive = name.endsWith(".zip")
+                ? new ZipArchiveInputStream(in)
+                : new TarArchiveInputStream(name.endsWith(".tar") ? in : new GZIPInputStream(in))) {
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (!archive.canReadEntryData(entry)) {
+                    results.add(CompletableFuture.completedFuture(
+                            new UploadResult(entry.getName(), Status.REJECTED, "unsupported archive entry")));
+                    continue;
+                }
+                ingestEntry(entry.getName(), archive, maxEdge, seen, budget, results);
+            }
+        }
+        log.info("Ingested {} files from {}", results.size(), fileName);
+        return results;
+    }
+
+    public List<CompletableFuture<UploadResult>> ingestFolder(String folderName, Integer maxEdge) throws IOException {
+        // anyone who can reach the UI can start an import, so only the imports folder is readable
+        if (!Files.isDirectory(importsPath)) {
+            throw new IOException("Imports folder " + importsPath + " does not exist");
+        }
+        Path root = importsPath.toRealPath();
+        Path folder = root.resolve(folderName).normalize();
+        if (!Files.isDirectory(folder)) {
+            throw new IOException("Not a folder: " + folder);
+        }
+        folder = folder.toRealPath();
+        if (!folder.startsWith(root)) {
+            throw new IOException("Only folders inside " + root + " can be imported");
+        }
+        if (Files.exists(datasetPath.getParent()) && folder.startsWith(datasetPath.getParent().toRealPath())) {
+            throw new IOException("Cannot import from the dataset folder itself");
+        }
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(folder)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        List<CompletableFuture<UploadResult>> results = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        ExtractionBudget budget = new ExtractionBudget();
+        for (Path file : files) {
+            if (!file.toRealPath().startsWith(root)) {
+                log.warn("Skipping {}, it links outside {}", file, root);
+                continue;
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                ingestEntry(folder.relativize(file).toString(), in, maxEdge, seen, budget, results);
+            }
+        }
+        log.info("Ingested {} files from {}", results.size(), folder);
+        return results;
+    }
+
+    private void ingestEntry(String entryName,
+                             InputStream in,
+                             Integer maxEdge,
+                             Set<String> seen,
+                             ExtractionBudget budget,
+                             List<CompletableFuture<UploadResult>> results) throws IOException {
+        String normalized = entryName.replace('\\', '/');
+        String name = normalized.substring(normalized.lastIndexOf('/') + 1);
+        if (name.isEmpty() || name.startsWith(".") || normalized.startsWith("__MACOSX/")
+                || !DATASET_EXTENSIONS.contains(FilenameUtils.getExtension(name).toLowerCase(Locale.ROOT))) {
+            return;
+        }
+
+        // the dataset folder is flat, so captions pair with images by base name regardless of sub folders
+        if (!seen.add(name)) {
+            results.add(CompletableFuture.completedFuture(
+                    new UploadResult(name, Status.REJECTED, "duplicate file name " + entryName)));
+            return;
+        }
+        results.add(receive(name, in, maxEdge, budget));
+    }
+
+    private UploadResult process(String name, Path staged, Integer maxEdge) {
+        try {
+            String extension = FilenameUtils.getExtension(name).toLowerCase(Locale.ROOT);
+            UploadResult result = switch (extension) {
+                case "txt" -> validateCaption(name, staged);
+                case "png", "jpg", "jpeg" -> normalizeImage(name, staged, extension, maxEdge);
+                case "webp" -> validateWebp(name, staged);
+                default -> new UploadResult(name, Status.REJECTED, "unsupported file type");
+            };
+
+            if (result.status() != Status.REJECTED) {
+                Files.createDirectories(datasetPath);
+                Files.move(staged, datasetPath.resolve(name),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not process upload {}", name, e);
+            return new UploadResult(name, Status.REJECTED, e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(staged);
+            } catch (IOException e) {
+                log.debug("Could not remove staged upload {}", staged, e);
+            }
+        }
+    }
+
+    private UploadResult validateCaption(String name, Path staged) throws IOException {
+        if (Files.size(staged) > MAX_CAPTION_BYTES) {
+            return new UploadResult(name, Status.REJECTED, "caption larger than 64 KB");
+        }
+        try {
+            StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(staged)));
+        } catch (CharacterCodingException e) {
+            return new UploadResult(name, Status.REJECTED, "caption is not valid UTF-8");
+        }
+        return new UploadResult(name, Status.ACCEPTED, null);
+    }
+
+    private UploadResult validateWebp(String name, Path staged) throws IOException {
+        byte[] header = new byte[12];
+        try (InputStream in = Files.newInputStream(staged)) {
+            if (in.readNBytes(header, 0, header.length) < header.length
+                    || !"RIFF".equals(new String(header, 0, 4, StandardCharsets.US_ASCII))
+                    || !"WEBP".equals(new String(header, 8, 4, StandardCharsets.US_ASCII))) {
+                return new UploadResult(name, Status.REJECTED, "not a WebP image");
+            }
+        }
+        return new UploadResult(name, Status.ACCEPTED, "WebP is not decoded, stored as uploaded");
+    }
+
+    private UploadResult normalizeImage(String name, Path staged, String extension, Integer maxEdge) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream in = ImageIO.createImageInputStream(staged.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return new UploadResult(name, Status.REJECTED, "not a readable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                String expected = "png".equals(extension) ? "png" : "jpeg";
+                if (!format.equals(expected)) {
+                    return new UploadResult(name, Status.REJECTED, "file extension does not match its " + format + " content");
+                }
+
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > MAX_PIXELS) {
+                    return new UploadResult(name, Status.REJECTED, "image has more than 64 megapixels");
+                }
+                if (maxEdge == null || Math.max(reader.getWidth(0), reader.getHeight(0)) <= maxEdge) {
+                    reader.read(0);
+                    return new UploadResult(name, Status.ACCEPTED, null);
+                }
+                image = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return new UploadResult(name, Status.REJECTED, "corrupt image: " + e.getMessage());
+        }
+
+        boolean png = "png".equals(extension);
+        BufferedImage resized = ImageScaler.fitWithin(image, maxEdge, png);
+        Path resizedFile = staged.resolveSibling(staged.getFileName() + ".resized");
+        try {
+            ImageFiles.write(resized, png ? "png" : "jpeg", resizedFile);
+            Files.move(resizedFile, staged, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(resizedFile);
+        }
+        return new UploadResult(name, Status.RESIZED, image.getWidth() + "x" + image.getHeight()
+                + " -> " + resized.getWidth() + "x" + resized.getHeight());
+    }
+}
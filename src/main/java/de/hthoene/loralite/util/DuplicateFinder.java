@@ -0,0 +1,150 @@
+package de.hthoene.loralite.util;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Slf4j
+@Service
+public class DuplicateFinder {
+    public static final int DEFAULT_MAX_DISTANCE = 6;
+    private static final int HASH_SOURCE_EDGE = 64;
+
+    public record DuplicateCluster(List<DatasetIndex.DatasetItem> items) {
+    }
+
+    private final DatasetIndex datasetIndex;
+    private final ExecutorService workers = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            Thread.ofPlatform().name("dataset-phash-", 0).daemon(true).factory());
+
+    public DuplicateFinder(DatasetIndex datasetIndex) {
+        this.datasetIndex = datasetIndex;
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
+    public CompletableFuture<List<DuplicateCluster>> findDuplicates(int maxDistance) {
+        List<DatasetIndex.DatasetItem> items = datasetIndex.list();
+        List<CompletableFuture<Void>> hashing = items.stream()
+                .filter(item -> datasetIndex.perceptualHash(item).isEmpty())
+                .map(item -> CompletableFuture.runAsync(() -> computeHash(item), workers))
+                .toList();
+
+        return CompletableFuture.allOf(hashing.toArray(CompletableFuture[]::new))
+                .thenApplyAsync(_ -> cluster(items, maxDistance), workers);
+    }
+
+    private void computeHash(DatasetIndex.DatasetItem item) {
+        try {
+            BufferedImage image = readSubsampled(item.image());
+            if (image == null) {
+                log.debug("Cannot decode {} for duplicate detection", item.image());
+                return;
+            }
+            datasetIndex.putPerceptualHash(item, PerceptualHash.dHash(image));
+        } catch (IOException e) {
+            log.debug("Could not hash {}", item.image(), e);
+        }
+    }
+
+    // reading every n-th pixel of every n-th row keeps the raster small, a 9x8 hash needs no more than that
+    private static BufferedImage readSubsampled(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / HASH_SOURCE_EDGE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private List<DuplicateCluster> cluster(List<DatasetIndex.DatasetItem> items, int maxDistance) {
+        List<OptionalLong> hashes = items.stream().map(datasetIndex::perceptualHash).toList();
+        List<DuplicateCluster> clusters = groupByDistance(hashes, maxDistance).stream()
+                .map(group -> new DuplicateCluster(group.stream().map(items::get).toList()))
+                .toList();
+        log.info("Found {} duplicate clusters among {} images", clusters.size(), items.size());
+        return clusters;
+    }
+
+    // near-duplicates chain, so a and c share a cluster when both are close to b
+    static List<List<Integer>> groupByDistance(List<OptionalLong> hashes, int maxDistance) {
+        BkTree<Integer> tree = new BkTree<>();
+        int[] parents = new int[hashes.size()];
+        for (int i = 0; i < hashes.size(); i++) {
+            if (hashes.get(i).isEmpty()) {
+                parents[i] = -1;
+                continue;
+            }
+            parents[i] = i;
+            tree.add(hashes.get(i).getAsLong(), i);
+        }
+
+        for (int i = 0; i < hashes.size(); i++) {
+            if (parents[i] < 0) {
+                continue;
+            }
+            for (int match : tree.search(hashes.get(i).getAsLong(), maxDistance)) {
+                union(parents, i, match);
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            if (parents[i] >= 0) {
+                groups.computeIfAbsent(find(parents, i), _ -> new ArrayList<>()).add(i);
+            }
+        }
+        return groups.values().stream()
+                .filter(group -> group.size() > 1)
+                .sorted(Comparator.comparingInt(List<Integer>::size).reversed())
+                .toList();
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int first, int second) {
+        int firstRoot = find(parents, first);
+        int secondRoot = find(parents, second);
+        if (firstRoot != secondRoot) {
+            parents[Math.max(firstRoot, secondRoot)] = Math.min(firstRoot, secondRoot);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package de.hthoene.loralite.util;
+
+import com.vaadin.flow.shared.Registration;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+public class EventBroadcaster {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+            .name("event-broadcaster")
+            .daemon(true)
+            .factory());
+    private final List<Consumer<WorkflowEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    public Registration register(Consumer<WorkflowEvent> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    public void broadcast(WorkflowEvent event) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            for (Consumer<WorkflowEvent> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    log.warn("Event listener failed for {}", event.getClass().getSimpleName(), e);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+}
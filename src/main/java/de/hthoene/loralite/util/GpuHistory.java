@@ -0,0 +1,196 @@
+package de.hthoene.loralite.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class GpuHistory {
+
+    public record MetricSummary(float min, float avg, float p95) {
+    }
+
+    public record Summary(int samples, MetricSummary util, MetricSummary memUsed) {
+    }
+
+    public record Series(long[] timestamps, float[] util, float[] memUsed, long memTotal) {
+    }
+
+    public record Window(Series series, Summary summary) {
+    }
+
+    private final int capacity;
+    private final Map<Integer, DeviceSeries> devices = new ConcurrentSkipListMap<>();
+
+    public GpuHistory(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void record(GpuStats stats, long timestampMs) {
+        if (stats == null || stats.getGpus() == null) {
+            return;
+        }
+        for (GpuInfo gpu : stats.getGpus()) {
+            devices.computeIfAbsent(gpu.getIndex(), _ -> new DeviceSeries(capacity))
+                    .add(timestampMs, (float) gpu.getUtil(), gpu.getMem_used(), gpu.getMem_total());
+        }
+    }
+
+    public List<Integer> getDevices() {
+        return List.copyOf(devices.keySet());
+    }
+
+    public Summary summarize(int device, long fromMs) {
+        DeviceSeries series = devices.get(device);
+        return series != null ? series.summarize(fromMs) : new Summary(0, null, null);
+    }
+
+    public Series downsample(int device, long fromMs, long toMs, int buckets) {
+        DeviceSeries series = devices.get(device);
+        if (series == null) {
+            return new Series(new long[0], new float[0], new float[0], 0);
+        }
+        return series.downsample(fromMs, toMs, buckets);
+    }
+
+    public Window window(int device, long fromMs, long toMs, int buckets) {
+        return new Window(downsample(device, fromMs, toMs, buckets), summarize(device, fromMs));
+    }
+
+    public void writeCsv(Path file, long fromMs, long toMs) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("device,timestamp_ms,util,mem_used_mb,mem_total_mb\n");
+            for (Map.Entry<Integer, DeviceSeries> entry : devices.entrySet()) {
+                entry.getValue().writeCsv(entry.getKey(), writer, fromMs, toMs);
+            }
+        }
+    }
+
+    private static class DeviceSeries {
+        private final long[] timestamps;
+        private final float[] util;
+        private final float[] memUsed;
+
+        private long memTotal;
+        private int head;
+        private int size;
+
+        private DeviceSeries(int capacity) {
+            this.timestamps = new long[capacity];
+            this.util = new float[capacity];
+            this.memUsed = new float[capacity];
+        }
+
+        private synchronized void add(long timestampMs, float utilValue, long memUsedValue, long memTotalValue) {
+            timestamps[head] = timestampMs;
+            util[head] = utilValue;
+            memUsed[head] = memUsedValue;
+            memTotal = memTotalValue;
+
+            head = (head + 1) % timestamps.length;
+            if (size < timestamps.length) {
+                size++;
+            }
+        }
+
+        private int slot(int i) {
+            return (head - size + i + timestamps.length) % timestamps.length;
+        }
+
+        private int firstIndexFrom(long fromMs) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[slot(mid)] < fromMs) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private synchronized Summary summarize(long fromMs) {
+            int start = firstIndexFrom(fromMs);
+            int count = size - start;
+            if (count == 0) {
+                return new Summary(0, null, null);
+            }
+
+            float[] utilWindow = new float[count];
+            float[] memWindow = new float[count];
+            for (int i = 0; i < count; i++) {
+                int slot = slot(start + i);
+                utilWindow[i] = util[slot];
+                memWindow[i] = memUsed[slot];
+            }
+            return new Summary(count, summarize(utilWindow), summarize(memWindow));
+        }
+
+        private static MetricSummary summarize(float[] values) {
+            double sum = 0;
+            for (float value : values) {
+                sum += value;
+            }
+            Arrays.sort(values);
+            int p95Index = Math.min(values.length - 1, (int) Math.ceil(values.length * 0.95) - 1);
+            return new MetricSummary(values[0], (float) (sum / values.length), values[Math.max(0, p95Index)]);
+        }
+
+        private synchronized Series downsample(long fromMs, long toMs, int buckets) {
+            long[] bucketTimestamps = new long[buckets];
+            float[] bucketUtil = new float[buckets];
+            float[] bucketMem = new float[buckets];
+            int[] counts = new int[buckets];
+
+            long span = Math.max(1, toMs - fromMs);
+            for (int i = firstIndexFrom(fromMs); i < size; i++) {
+                int slot = slot(i);
+                long timestamp = timestamps[slot];
+                if (timestamp > toMs) {
+                    break;
+                }
+                int bucket = (int) Math.min(buckets - 1, (timestamp - fromMs) * buckets / span);
+                bucketUtil[bucket] += util[slot];
+                bucketMem[bucket] += memUsed[slot];
+                counts[bucket]++;
+            }
+
+            int filled = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                if (counts[bucket] == 0) {
+                    continue;
+                }
+                bucketTimestamps[filled] = fromMs + (bucket * span + span / 2) / buckets;
+                bucketUtil[filled] = bucketUtil[bucket] / counts[bucket];
+                bucketMem[filled] = bucketMem[bucket] / counts[bucket];
+                filled++;
+            }
+
+            return new Series(
+                    Arrays.copyOf(bucketTimestamps, filled),
+                    Arrays.copyOf(bucketUtil, filled),
+                    Arrays.copyOf(bucketMem, filled),
+                    memTotal
+            );
+        }
+
+        private synchronized void writeCsv(int device, BufferedWriter writer, long fromMs, long toMs) throws IOException {
+            for (int i = firstIndexFrom(fromMs); i < size; i++) {
+                int slot = slot(i);
+                if (timestamps[slot] > toMs) {
+                    break;
+                }
+                writer.write(String.format(Locale.ROOT, "%d,%d,%.1f,%.0f,%d%n",
+                        device, timestamps[slot], util[slot], memUsed[slot], memTotal));
+            }
+        }
+    }
+}
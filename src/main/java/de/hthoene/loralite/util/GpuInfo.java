@@ -5,6 +5,7 @@ import lombok.Data;
 @Data
 public class GpuInfo {
     private int index;
+    private String name;
     private double util;
     private long mem_used;
     private long mem_total;
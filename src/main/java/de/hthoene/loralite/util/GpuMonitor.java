@@ -4,37 +4,81 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Service
 public class GpuMonitor {
+    public static final Duration FIRST_SAMPLE_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration HISTORY_WINDOW = Duration.ofMinutes(30);
+    public static final int HISTORY_POINTS = 120;
+    // one chart point covers this much time, recomputing more often would not change the picture
+    private static final long HISTORY_REFRESH_MS = HISTORY_WINDOW.toMillis() / HISTORY_POINTS;
 
     private final GpuStatsService gpuStatsService;
-    private final ScheduledExecutorService scheduler;
+    private final GpuHistory history;
+    private final EventBroadcaster eventBroadcaster;
     private volatile GpuStats lastStats;
+    private volatile long startedAt;
+    private volatile Map<Integer, GpuHistory.Window> historyWindows = Map.of();
+    private long lastHistoryRefresh;
 
-    public GpuMonitor(GpuStatsService gpuStatsService) {
+    public GpuMonitor(GpuStatsService gpuStatsService,
+                      GpuMonitorProperties monitorProperties,
+                      EventBroadcaster eventBroadcaster) {
         this.gpuStatsService = gpuStatsService;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.eventBroadcaster = eventBroadcaster;
+        this.history = new GpuHistory(Math.max(1, monitorProperties.getHistorySamples()));
     }
 
     @PostConstruct
     void start() {
-        scheduler.scheduleAtFixedRate(this::poll, 0, 3, TimeUnit.SECONDS);
+        startedAt = System.currentTimeMillis();
+        gpuStatsService.startStreaming(this::onSample);
     }
 
     @PreDestroy
     void stop() {
-        scheduler.shutdownNow();
+        gpuStatsService.stopStreaming();
     }
 
-    private void poll() {
-        gpuStatsService.queryGpuStats().ifPresent(stats -> lastStats = stats);
+    private void onSample(GpuStats stats) {
+        long now = System.currentTimeMillis();
+        lastStats = stats;
+        history.record(stats, now);
+        if (now - lastHistoryRefresh >= HISTORY_REFRESH_MS) {
+            refreshHistoryWindows(now);
+        }
+        eventBroadcaster.broadcast(new WorkflowEvent.GpuStatsUpdated(stats));
+    }
+
+    // computed once for all open views, which only repaint when the window they show has been replaced
+    private void refreshHistoryWindows(long now) {
+        long from = now - HISTORY_WINDOW.toMillis();
+        Map<Integer, GpuHistory.Window> windows = new HashMap<>();
+        for (int device : history.getDevices()) {
+            windows.put(device, history.window(device, from, now, HISTORY_POINTS));
+        }
+        historyWindows = Map.copyOf(windows);
+        lastHistoryRefresh = now;
     }
 
     public GpuStats getLastStats() {
         return lastStats;
     }
+
+    public boolean isAwaitingFirstSample() {
+        return lastStats == null
+                && gpuStatsService.isStreaming()
+                && System.currentTimeMillis() - startedAt < FIRST_SAMPLE_TIMEOUT.toMillis();
+    }
+
+    public GpuHistory.Window getHistoryWindow(int device) {
+        return historyWindows.get(device);
+    }
+
+    public GpuHistory getHistory() {
+        return history;
+    }
 }
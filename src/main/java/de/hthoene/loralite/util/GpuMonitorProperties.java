@@ -0,0 +1,91 @@
+package de.hthoene.loralite.util;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "loralite.monitor")
+public class GpuMonitorProperties {
+    private long sampleIntervalMs = 1000;
+    private long restartDelayMs = 3000;
+    private String provider = "auto";
+    private String sysfsDrm = "/sys/class/drm";
+    private String nvidiaProc = "/proc/driver/nvidia";
+    private int historySamples = 14_400;
+    private long minFreeVramMb = 2048;
+
+    public Duration getSampleInterval() {
+        return Duration.ofMillis(Math.max(100, sampleIntervalMs));
+    }
+
+    public Duration getRestartDelay() {
+        return Duration.ofMillis(Math.max(0, restartDelayMs));
+    }
+
+    public Path getSysfsDrmPath() {
+        return Path.of(sysfsDrm);
+    }
+
+    public Path getNvidiaProcPath() {
+        return Path.of(nvidiaProc);
+    }
+
+    public long getSampleIntervalMs() {
+        return sampleIntervalMs;
+    }
+
+    public void setSampleIntervalMs(long sampleIntervalMs) {
+        this.sampleIntervalMs = sampleIntervalMs;
+    }
+
+    public long getRestartDelayMs() {
+        return restartDelayMs;
+    }
+
+    public void setRestartDelayMs(long restartDelayMs) {
+        this.restartDelayMs = restartDelayMs;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public void setProvider(String provider) {
+        this.provider = provider;
+    }
+
+    public String getSysfsDrm() {
+        return sysfsDrm;
+    }
+
+    public void setSysfsDrm(String sysfsDrm) {
+        this.sysfsDrm = sysfsDrm;
+    }
+
+    public long getMinFreeVramMb() {
+        return minFreeVramMb;
+    }
+
+    public void setMinFreeVramMb(long minFreeVramMb) {
+        this.minFreeVramMb = minFreeVramMb;
+    }
+
+    public String getNvidiaProc() {
+        return nvidiaProc;
+    }
+
+    public void setNvidiaProc(String nvidiaProc) {
+        this.nvidiaProc = nvidiaProc;
+    }
+
+    public int getHistorySamples() {
+        return historySamples;
+    }
+
+    public void setHistorySamples(int historySamples) {
+        this.historySamples = historySamples;
+    }
+}
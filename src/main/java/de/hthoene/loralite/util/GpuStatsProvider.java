@@ -0,0 +1,18 @@
+package de.hthoene.loralite.util;
+
+import java.util.function.Consumer;
+
+public interface GpuStatsProvider {
+
+    String getName();
+
+    boolean isAvailable();
+
+    default boolean isPreferredForAuto() {
+        return true;
+    }
+
+    void start(Consumer<GpuStats> consumer);
+
+    void stop();
+}
@@ -1,42 +1,55 @@
 package de.hthoene.loralite.util;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
-import java.util.Optional;
+import java.util.List;
+import java.util.function.Consumer;
 
+@Slf4j
 @Service
 public class GpuStatsService {
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Path monitorScript;
+    private final List<GpuStatsProvider> providers;
+    private final GpuMonitorProperties monitorProperties;
 
-    public GpuStatsService(WorkspaceProperties workspaceProperties) {
-        this.monitorScript = workspaceProperties.getMonitorPath().resolve("gpu_monitor.py");
+    private GpuStatsProvider activeProvider;
+
+    public GpuStatsService(List<GpuStatsProvider> providers, GpuMonitorProperties monitorProperties) {
+        this.providers = providers;
+        this.monitorProperties = monitorProperties;
+    }
+
+    public synchronized void startStreaming(Consumer<GpuStats> consumer) {
+        if (activeProvider != null) {
+            return;
+        }
+
+        String requested = monitorProperties.getProvider();
+        activeProvider = providers.stream()
+                .filter(provider -> "auto".equalsIgnoreCase(requested)
+                        ? provider.isPreferredForAuto()
+                        : provider.getName().equalsIgnoreCase(requested))
+                .filter(GpuStatsProvider::isAvailable)
+                .findFirst()
+                .orElse(null);
+
+        if (activeProvider == null) {
+            log.warn("No GPU statistics provider available (requested: {})", requested);
+            return;
+        }
+
+        log.info("Using {} GPU statistics provider", activeProvider.getName());
+        activeProvider.start(consumer);
+    }
+
+    public synchronized boolean isStreaming() {
+        return activeProvider != null;
     }
 
-    public Optional<GpuStats> queryGpuStats() {
-        try {
-            Process process = new ProcessBuilder("python", monitorScript.toString())
-                    .redirectErrorStream(true)
-                    .start();
-
-            String json;
-            try (InputStream is = process.getInputStream()) {
-                json = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-            }
-
-            int exitCode = process.waitFor();
-            if (exitCode != 0 || json.isBlank()) {
-                return Optional.empty();
-            }
-
-            GpuStats stats = objectMapper.readValue(json, GpuStats.class);
-            return Optional.of(stats);
-        } catch (Exception e) {
-            return Optional.empty();
+    public synchronized void stopStreaming() {
+        if (activeProvider != null) {
+            activeProvider.stop();
+            activeProvider = null;
         }
     }
 }
@@ -0,0 +1,162 @@
+package de.hthoene.loralite.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class ImageEditService {
+    private static final Pattern VERSION = Pattern.compile("v(\\d+)\\.[^.]+");
+
+    public record CropRegion(double x, double y, double width, double height) {
+    }
+
+    private final Path backupsPath;
+
+    public ImageEditService(WorkspaceProperties workspaceProperties) {
+        this.backupsPath = workspaceProperties.getBackupsPath().resolve("latest");
+    }
+
+    public static boolean supports(Path image) {
+        String extension = FilenameUtils.getExtension(image.getFileName().toString()).toLowerCase(Locale.ROOT);
+        return extension.equals("png") || extension.equals("jpg") || extension.equals("jpeg");
+    }
+
+    public String crop(Path image, CropRegion region, Integer maxEdge) throws IOException {
+        if (!supports(image)) {
+            throw new IOException("Cannot edit " + image.getFileName() + " on the server");
+        }
+
+        BufferedImage cropped;
+        try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Not a readable image: " + image.getFileName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                Rectangle area = toPixels(region, width, height);
+                if (area.width == width && area.height == height
+                        && (maxEdge == null || Math.max(width, height) <= maxEdge)) {
+                    return width + "x" + height;
+                }
+
+                // decode only the selected rows and columns, skipping every n-th pixel when we shrink anyway
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(area);
+                if (maxEdge != null) {
+                    int subsampling = Math.max(1, Math.max(area.width, area.height) / (maxEdge * 2));
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                cropped = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        boolean png = FilenameUtils.isExtension(image.getFileName().toString().toLowerCase(Locale.ROOT), "png");
+        BufferedImage result = maxEdge != null
+                ? ImageScaler.fitWithin(cropped, maxEdge, png)
+                : cropped;
+
+        Path edited = image.resolveSibling("." + image.getFileName() + ".edit");
+        try {
+            ImageFiles.write(result, png ? "png" : "jpeg", edited);
+            Path backup = backup(image);
+            Files.move(edited, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Cropped {} to {}x{}, previous version kept as {}",
+                    image.getFileName(), result.getWidth(), result.getHeight(), backup);
+        } finally {
+            Files.deleteIfExists(edited);
+        }
+        return result.getWidth() + "x" + result.getHeight();
+    }
+
+    public boolean hasBackup(Path image) {
+        return latestBackup(image).isPresent();
+    }
+
+    public void restore(Path image) throws IOException {
+        Path backup = latestBackup(image)
+                .orElseThrow(() -> new IOException("No previous version of " + image.getFileName()));
+        Path restored = image.resolveSibling("." + image.getFileName() + ".edit");
+        try {
+            Files.copy(backup, restored, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(restored, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(restored);
+        }
+        Files.delete(backup);
+        log.info("Restored {} from {}", image.getFileName(), backup);
+    }
+
+    public void discardBackups(Path image) throws IOException {
+        Path folder = backupsPath.resolve(image.getFileName().toString());
+        if (Files.isDirectory(folder)) {
+            FileUtils.deleteDirectory(folder.toFile());
+        }
+    }
+
+    private Path backup(Path image) throws IOException {
+        Path folder = backupsPath.resolve(image.getFileName().toString());
+        Files.createDirectories(folder);
+        int version = latestBackup(image).map(ImageEditService::version).orElse(0) + 1;
+        Path backup = folder.resolve("v" + version + "." + FilenameUtils.getExtension(image.getFileName().toString()));
+        Files.copy(image, backup, StandardCopyOption.COPY_ATTRIBUTES);
+        return backup;
+    }
+
+    private Optional<Path> latestBackup(Path image) {
+        Path folder = backupsPath.resolve(image.getFileName().toString());
+        if (!Files.isDirectory(folder)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> versions = Files.list(folder)) {
+            return versions
+                    .filter(path -> version(path) > 0)
+                    .max(Comparator.comparingInt(ImageEditService::version));
+        } catch (IOException e) {
+            log.warn("Could not list previous versions of {}", image, e);
+            return Optional.empty();
+        }
+    }
+
+    private static int version(Path backup) {
+        Matcher matcher = VERSION.matcher(backup.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    private static Rectangle toPixels(CropRegion region, int width, int height) throws IOException {
+        int x = (int) Math.round(Math.clamp(region.x(), 0.0, 1.0) * width);
+        int y = (int) Math.round(Math.clamp(region.y(), 0.0, 1.0) * height);
+        int right = (int) Math.round(Math.clamp(region.x() + region.width(), 0.0, 1.0) * width);
+        int bottom = (int) Math.round(Math.clamp(region.y() + region.height(), 0.0, 1.0) * height);
+        if (right - x < 1 || bottom - y < 1) {
+            throw new IOException("Crop region is empty");
+        }
+        return new Rectangle(x, y, right - x, bottom - y);
+    }
+}
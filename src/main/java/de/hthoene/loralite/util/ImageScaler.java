@@ -0,0 +1,46 @@
+package de.hthoene.loralite.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+public final class ImageScaler {
+
+    private ImageScaler() {
+    }
+
+    public static BufferedImage fitWithin(BufferedImage source, int maxEdge, boolean keepAlpha) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        int type = keepAlpha && source.getColorModel().hasAlpha()
+                ? BufferedImage.TYPE_INT_ARGB
+                : BufferedImage.TYPE_INT_RGB;
+
+        // halve in steps, a single bilinear pass over a large factor drops most of the source pixels
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2, type);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight || current.getType() != type) {
+            current = draw(current, targetWidth, targetHeight, type);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, type == BufferedImage.TYPE_INT_RGB ? Color.WHITE : null, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
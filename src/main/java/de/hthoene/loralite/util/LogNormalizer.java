@@ -0,0 +1,39 @@
+package de.hthoene.loralite.util;
+
+import java.util.function.Consumer;
+
+public class LogNormalizer {
+
+    private final StringBuilder current = new StringBuilder();
+    private boolean overwritePending;
+
+    public void accept(CharSequence chunk, Consumer<String> onCommit, Consumer<String> onLiveUpdate) {
+        boolean changed = false;
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == '\n') {
+                onCommit.accept(current.toString());
+                current.setLength(0);
+                overwritePending = false;
+                changed = false;
+            } else if (c == '\r') {
+                overwritePending = true;
+            } else {
+                if (overwritePending) {
+                    current.setLength(0);
+                    overwritePending = false;
+                }
+                current.append(c);
+                changed = true;
+            }
+        }
+        if (changed) {
+            onLiveUpdate.accept(current.toString());
+        }
+    }
+
+    public void reset() {
+        current.setLength(0);
+        overwritePending = false;
+    }
+}
@@ -0,0 +1,36 @@
+package de.hthoene.loralite.util;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "loralite.log")
+public class LogProperties {
+    private int retainedLines = 5000;
+    private boolean compactOnDisk = true;
+    private long progressIntervalMs = 5000;
+
+    public int getRetainedLines() {
+        return retainedLines;
+    }
+
+    public void setRetainedLines(int retainedLines) {
+        this.retainedLines = retainedLines;
+    }
+
+    public boolean isCompactOnDisk() {
+        return compactOnDisk;
+    }
+
+    public void setCompactOnDisk(boolean compactOnDisk) {
+        this.compactOnDisk = compactOnDisk;
+    }
+
+    public long getProgressIntervalMs() {
+        return progressIntervalMs;
+    }
+
+    public void setProgressIntervalMs(long progressIntervalMs) {
+        this.progressIntervalMs = progressIntervalMs;
+    }
+}
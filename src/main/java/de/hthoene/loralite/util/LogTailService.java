@@ -0,0 +1,194 @@
+package de.hthoene.loralite.util;
+
+import com.vaadin.flow.shared.Registration;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+public class LogTailService {
+    private static final int BACKLOG_CHARS = 256 * 1024;
+    private static final int READ_CHUNK_BYTES = 64 * 1024;
+    private static final long FALLBACK_POLL_MS = 1000;
+
+    private final Map<Path, FileTail> tails = new ConcurrentHashMap<>();
+
+    public Registration subscribe(Path logFile, Consumer<String> listener) {
+        FileTail tail = tails.computeIfAbsent(logFile.toAbsolutePath().normalize(), FileTail::new);
+        return tail.subscribe(listener);
+    }
+
+    @PreDestroy
+    void stop() {
+        tails.values().forEach(FileTail::stop);
+    }
+
+    private static class FileTail {
+        private final Path file;
+        private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+        private final StringBuilder backlog = new StringBuilder();
+
+        private long offset;
+        private Thread thread;
+        private WatchService watchService;
+
+        private FileTail(Path file) {
+            this.file = file;
+        }
+
+        private synchronized Registration subscribe(Consumer<String> listener) {
+            if (thread == null) {
+                readNew();
+                start();
+            }
+            if (!backlog.isEmpty()) {
+                listener.accept(backlog.toString());
+            }
+            listeners.add(listener);
+            return () -> unsubscribe(listener);
+        }
+
+        private synchronized void unsubscribe(Consumer<String> listener) {
+            listeners.remove(listener);
+            if (listeners.isEmpty()) {
+                stop();
+            }
+        }
+
+        private synchronized void start() {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                file.getParent().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                log.debug("Could not watch {}, falling back to polling", file, e);
+                watchService = null;
+            }
+            thread = Thread.ofVirtual()
+                    .name("log-tail-" + file.getFileName())
+                    .start(this::run);
+        }
+
+        private synchronized void stop() {
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    log.debug("Could not close watch service for {}", file, e);
+                }
+                watchService = null;
+            }
+        }
+
+        private void run() {
+            WatchService watcher = watchService;
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (watcher != null) {
+                        WatchKey key = watcher.poll(FALLBACK_POLL_MS, TimeUnit.MILLISECONDS);
+                        if (key != null) {
+                            key.pollEvents();
+                            key.reset();
+                        }
+                    } else {
+                        Thread.sleep(FALLBACK_POLL_MS);
+                    }
+                    readNew();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    log.warn("Could not tail log file {}", file, e);
+                }
+            }
+        }
+
+        private synchronized void readNew() {
+            if (!Files.exists(file)) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < offset) {
+                    offset = 0;
+                    backlog.setLength(0);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK_BYTES);
+                while (offset < size) {
+                    buffer.clear();
+                    int read = channel.read(buffer, offset);
+                    if (read <= 0) {
+                        break;
+                    }
+                    int length = completeLength(buffer.array(), read, offset + read >= size);
+                    if (length == 0) {
+                        break;
+                    }
+                    offset += length;
+                    publish(new String(buffer.array(), 0, length, StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                log.warn("Could not read log file {}", file, e);
+            }
+        }
+
+        private static int completeLength(byte[] bytes, int read, boolean endOfFile) {
+            for (int i = read - 1; i >= 0; i--) {
+                if (bytes[i] == '\n' || bytes[i] == '\r') {
+                    return i + 1;
+                }
+            }
+            return endOfFile ? 0 : utf8Boundary(bytes, read);
+        }
+
+        private static int utf8Boundary(byte[] bytes, int length) {
+            int end = length;
+            while (end > 0 && length - end < 3 && (bytes[end - 1] & 0xC0) == 0x80) {
+                end--;
+            }
+            if (end > 0 && (bytes[end - 1] & 0xC0) == 0xC0) {
+                return end - 1;
+            }
+            return length;
+        }
+
+        private void publish(String chunk) {
+            backlog.append(chunk);
+            if (backlog.length() > BACKLOG_CHARS) {
+                backlog.delete(0, backlog.length() - BACKLOG_CHARS);
+            }
+            for (Consumer<String> listener : listeners) {
+                try {
+                    listener.accept(chunk);
+                } catch (RuntimeException e) {
+                    log.debug("Dropping log listener for {}", file, e);
+                    unsubscribe(listener);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package de.hthoene.loralite.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Slf4j
+@Component
+@Order(2)
+public class PythonGpuStatsProvider implements GpuStatsProvider {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path monitorScript;
+    private final GpuMonitorProperties monitorProperties;
+
+    private volatile boolean streaming;
+    private volatile Process monitorProcess;
+    private Thread streamThread;
+
+    public PythonGpuStatsProvider(WorkspaceProperties workspaceProperties, GpuMonitorProperties monitorProperties) {
+        this.monitorScript = workspaceProperties.getMonitorPath().resolve("gpu_monitor.py");
+        this.monitorProperties = monitorProperties;
+    }
+
+    @Override
+    public String getName() {
+        return "python";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Files.isRegularFile(monitorScript);
+    }
+
+    @Override
+    public synchronized void start(Consumer<GpuStats> consumer) {
+        if (streaming) {
+            return;
+        }
+        streaming = true;
+        streamThread = Thread.ofVirtual()
+                .name("gpu-monitor-stream")
+                .start(() -> streamLoop(consumer));
+    }
+
+    @Override
+    public synchronized void stop() {
+        streaming = false;
+        Process process = monitorProcess;
+        if (process != null) {
+            process.destroy();
+        }
+        if (streamThread != null) {
+            streamThread.interrupt();
+            streamThread = null;
+        }
+    }
+
+    private void streamLoop(Consumer<GpuStats> consumer) {
+        String loopMs = String.valueOf(monitorProperties.getSampleInterval().toMillis());
+
+        while (streaming) {
+            try {
+                Process process = new ProcessBuilder("python", "-u", monitorScript.toString(), "--loop-ms", loopMs)
+                        .redirectErrorStream(true)
+                        .start();
+                monitorProcess = process;
+
+                try (BufferedReader reader = process.inputReader(StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        parseLine(line).ifPresent(consumer);
+                    }
+                }
+
+                int exitCode = process.waitFor();
+                if (streaming) {
+                    log.warn("GPU monitor exited with code {}, restarting", exitCode);
+                }
+            } catch (IOException e) {
+                log.warn("Could not run GPU monitor {}", monitorScript, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                monitorProcess = null;
+            }
+
+            try {
+                Thread.sleep(monitorProperties.getRestartDelay());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Optional<GpuStats> parseLine(String line) {
+        if (line.isBlank() || !line.startsWith("{")) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(line, GpuStats.class));
+        } catch (IOException e) {
+            log.debug("Ignoring unparsable GPU monitor output: {}", line);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package de.hthoene.loralite.util;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "loralite.retention")
+public class RetentionProperties {
+    private long intervalMinutes = 60;
+    private int keepLastRuns = 0;
+    private int finalCheckpointOnlyAfterDays = 0;
+    private int tierAfterDays = 0;
+    private long throttleMbPerSecond = 50;
+
+    public boolean isEnabled() {
+        return keepLastRuns > 0 || finalCheckpointOnlyAfterDays > 0 || tierAfterDays > 0;
+    }
+
+    public long getIntervalMinutes() {
+        return Math.max(1, intervalMinutes);
+    }
+
+    public void setIntervalMinutes(long intervalMinutes) {
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    public int getKeepLastRuns() {
+        return keepLastRuns;
+    }
+
+    public void setKeepLastRuns(int keepLastRuns) {
+        this.keepLastRuns = keepLastRuns;
+    }
+
+    public int getFinalCheckpointOnlyAfterDays() {
+        return finalCheckpointOnlyAfterDays;
+    }
+
+    public void setFinalCheckpointOnlyAfterDays(int finalCheckpointOnlyAfterDays) {
+        this.finalCheckpointOnlyAfterDays = finalCheckpointOnlyAfterDays;
+    }
+
+    public int getTierAfterDays() {
+        return tierAfterDays;
+    }
+
+    public void setTierAfterDays(int tierAfterDays) {
+        this.tierAfterDays = tierAfterDays;
+    }
+
+    public long getThrottleMbPerSecond() {
+        return throttleMbPerSecond;
+    }
+
+    public void setThrottleMbPerSecond(long throttleMbPerSecond) {
+        this.throttleMbPerSecond = throttleMbPerSecond;
+    }
+}
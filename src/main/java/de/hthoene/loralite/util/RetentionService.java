@@ -0,0 +1,266 @@
+package de.hthoene.loralite.util;
+
+import de.hthoene.loralite.aitoolkit.AiToolkitService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class RetentionService {
+    private static final Pattern CHECKPOINT_STEP_PATTERN = Pattern.compile("_(\\d+)\\.safetensors$");
+    private static final int COPY_CHUNK_BYTES = 1 << 20;
+
+    private final RetentionProperties retentionProperties;
+    private final ArchiveService archiveService;
+    private final AiToolkitService aiToolkitService;
+    private final Path secondaryArchivePath;
+    private final ScheduledExecutorService scheduler;
+    private boolean garbagePending;
+
+    public RetentionService(WorkspaceProperties workspaceProperties,
+                            RetentionProperties retentionProperties,
+                            ArchiveService archiveService,
+                            AiToolkitService aiToolkitService) {
+        this.retentionProperties = retentionProperties;
+        this.archiveService = archiveService;
+        this.aiToolkitService = aiToolkitService;
+        this.secondaryArchivePath = workspaceProperties.getArchiveSecondaryPath();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("archive-retention")
+                .daemon(true)
+                .priority(Thread.MIN_PRIORITY)
+                .factory());
+    }
+
+    @PostConstruct
+    void start() {
+        if (!retentionProperties.isEnabled()) {
+            return;
+        }
+        long interval = retentionProperties.getIntervalMinutes();
+        scheduler.scheduleWithFixedDelay(this::runPass, interval, interval, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private boolean isBusy() {
+        return aiToolkitService.isRunning() || archiveService.isArchiving();
+    }
+
+    private void runPass() {
+        List<ArchiveEntry> archives = archiveService.getCatalog().list().stream()
+                .sorted(Comparator.comparing(ArchiveEntry::getArchivedAt).reversed())
+                .toList();
+
+        Instant now = Instant.now();
+        for (int i = 0; i < archives.size(); i++) {
+            if (isBusy()) {
+                log.debug("Training or archiving in progress, postponing retention");
+                return;
+            }
+
+            ArchiveEntry entry = archives.get(i);
+            try {
+                garbagePending |= apply(entry, i, Duration.between(entry.getArchivedAt(), now));
+            } catch (CancellationException e) {
+                // the blob store is left alone until a pass gets through every archive
+                log.info("Retention pass interrupted: {}", e.getMessage());
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Retention could not process archive {}", entry.getName(), e);
+            }
+        }
+
+        if (garbagePending) {
+            collectGarbage();
+        }
+    }
+
+    private boolean apply(ArchiveEntry entry, int position, Duration age) throws IOException {
+        if (retentionProperties.getKeepLastRuns() > 0 && position >= retentionProperties.getKeepLastRuns()) {
+            deleteArchive(entry);
+            return true;
+        }
+        if (retentionProperties.getTierAfterDays() > 0
+                && secondaryArchivePath != null
+                && entry.getLocation() == null
+                && age.toDays() >= retentionProperties.getTierAfterDays()) {
+            return moveToSecondary(entry);
+        }
+        if (retentionProperties.getFinalCheckpointOnlyAfterDays() > 0
+                && age.toDays() >= retentionProperties.getFinalCheckpointOnlyAfterDays()
+                && entry.getCheckpointCount() > Math.max(1, entry.getJobs().size())) {
+            return pruneCheckpoints(entry);
+        }
+        return false;
+    }
+
+    private void collectGarbage() {
+        try {
+            long freed = archiveService.collectGarbage();
+            garbagePending = false;
+            log.info("Retention freed {} MB of unreferenced archive blobs", freed / (1024 * 1024));
+        } catch (IOException e) {
+            log.warn("Could not collect unreferenced archive blobs", e);
+        }
+    }
+
+    private void deleteArchive(ArchiveEntry entry) throws IOException {
+        Path archiveFolder = archiveService.getArchiveFolder(entry.getName());
+        archiveService.getCatalog().remove(entry.getName());
+        deleteDirectory(archiveFolder);
+        log.info("Retention deleted archive {}", entry.getName());
+    }
+
+    private boolean moveToSecondary(ArchiveEntry entry) throws IOException {
+        Path archiveFolder = archiveService.getArchiveFolder(entry.getName());
+        Path target = secondaryArchivePath.resolve(entry.getName());
+        if (Files.exists(target)) {
+            log.warn("Secondary archive {} already exists, skipping", target);
+            return false;
+        }
+        Files.createDirectories(secondaryArchivePath);
+
+        try {
+            Files.move(archiveFolder, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path partial = secondaryArchivePath.resolve("." + entry.getName() + ".partial");
+            try {
+                throttledCopy(archiveFolder, partial);
+            } catch (IOException | CancellationException copyFailure) {
+                deleteDirectory(partial);
+                throw copyFailure;
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            deleteDirectory(archiveFolder);
+        }
+        archiveService.getCatalog().relocate(entry.getName(), target);
+        log.info("Retention moved archive {} to {}", entry.getName(), target);
+        return true;
+    }
+
+    private boolean pruneCheckpoints(ArchiveEntry entry) throws IOException {
+        Path outputFolder = archiveService.getArchiveFolder(entry.getName()).resolve("output");
+        if (!Files.isDirectory(outputFolder)) {
+            return false;
+        }
+
+        List<Path> folders;
+        try (Stream<Path> paths = Files.walk(outputFolder)) {
+            folders = paths.filter(Files::isDirectory).toList();
+        }
+
+        boolean pruned = false;
+        for (Path folder : folders) {
+            List<Path> checkpoints;
+            try (Stream<Path> files = Files.list(folder)) {
+                checkpoints = files
+                        .filter(file -> file.getFileName().toString().endsWith(".safetensors"))
+                        .sorted(Comparator.comparingLong(RetentionService::checkpointStep))
+                        .toList();
+            }
+            for (Path checkpoint : checkpoints.subList(0, Math.max(0, checkpoints.size() - 1))) {
+                Files.delete(checkpoint);
+                pruned = true;
+            }
+        }
+
+        if (pruned) {
+            archiveService.getCatalog().add(outputFolder.getParent());
+            log.info("Retention kept only the final checkpoints of archive {}", entry.getName());
+        }
+        return pruned;
+    }
+
+    private static long checkpointStep(Path checkpoint) {
+        Matcher matcher = CHECKPOINT_STEP_PATTERN.matcher(checkpoint.getFileName().toString());
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : Long.MAX_VALUE;
+    }
+
+    private void throttledCopy(Path source, Path target) throws IOException {
+        long bytesPerSecond = Math.max(1, retentionProperties.getThrottleMbPerSecond()) * 1024 * 1024;
+        long start = System.nanoTime();
+        long[] copied = {0};
+        byte[] buffer = new byte[COPY_CHUNK_BYTES];
+
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream out = Files.newOutputStream(target.resolve(source.relativize(file)))) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        copied[0] += read;
+                        throttle(start, copied[0], bytesPerSecond);
+                    }
+                }
+                Files.setLastModifiedTime(target.resolve(source.relativize(file)), attrs.lastModifiedTime());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void throttle(long start, long copied, long bytesPerSecond) {
+        if (isBusy()) {
+            throw new CancellationException("training or archiving started");
+        }
+        long expectedNanos = copied * 1_000_000_000L / bytesPerSecond;
+        long aheadNanos = expectedNanos - (System.nanoTime() - start);
+        if (aheadNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("retention stopped");
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,184 @@
+package de.hthoene.loralite.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+@Order(1)
+public class SysfsGpuStatsProvider implements GpuStatsProvider {
+    private static final Pattern CARD_PATTERN = Pattern.compile("card(\\d+)");
+    private static final String AMD_VENDOR = "0x1002";
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private final Path drmRoot;
+    private final Path nvidiaProc;
+    private final GpuMonitorProperties monitorProperties;
+
+    private ScheduledExecutorService scheduler;
+    private List<Card> cards = List.of();
+
+    private record Card(int index, String name, String pciAddress, Path busyPercent, Path vramUsed, Path vramTotal) {
+
+        private boolean isReadable() {
+            return Files.isReadable(busyPercent) && Files.isReadable(vramUsed) && Files.isReadable(vramTotal);
+        }
+    }
+
+    public SysfsGpuStatsProvider(GpuMonitorProperties monitorProperties) {
+        this.drmRoot = monitorProperties.getSysfsDrmPath();
+        this.nvidiaProc = monitorProperties.getNvidiaProcPath();
+        this.monitorProperties = monitorProperties;
+    }
+
+    @Override
+    public String getName() {
+        return "sysfs";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return !discoverCards().isEmpty();
+    }
+
+    @Override
+    public boolean isPreferredForAuto() {
+        // an amdgpu APU next to NVIDIA cards is not what torch trains on
+        return !hasEntries(nvidiaProc.resolve("gpus"));
+    }
+
+    @Override
+    public synchronized void start(Consumer<GpuStats> consumer) {
+        if (scheduler != null) {
+            return;
+        }
+        cards = discoverCards();
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("gpu-monitor-sysfs")
+                .daemon(true)
+                .factory());
+
+        long intervalMs = monitorProperties.getSampleInterval().toMillis();
+        // an exception escaping the task would cancel every later run
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                consumer.accept(sample());
+            } catch (RuntimeException e) {
+                log.warn("Could not publish sysfs GPU statistics", e);
+            }
+        }, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public GpuStats sample() {
+        List<GpuInfo> gpus = new ArrayList<>(cards.size());
+        for (Card card : cards) {
+            try {
+                GpuInfo gpu = new GpuInfo();
+                gpu.setIndex(card.index());
+                gpu.setName(card.name());
+                gpu.setUtil(readLong(card.busyPercent()));
+                gpu.setMem_used(readLong(card.vramUsed()) / BYTES_PER_MB);
+                gpu.setMem_total(readLong(card.vramTotal()) / BYTES_PER_MB);
+                gpus.add(gpu);
+            } catch (IOException | NumberFormatException e) {
+                log.debug("Could not read GPU statistics for {}", card.name(), e);
+            }
+        }
+
+        GpuStats stats = new GpuStats();
+        stats.setBackend("amd");
+        stats.setGpus(gpus);
+        return stats;
+    }
+
+    private List<Card> discoverCards() {
+        if (!Files.isDirectory(drmRoot)) {
+            return List.of();
+        }
+        List<Card> amdCards;
+        try (Stream<Path> stream = Files.list(drmRoot)) {
+            amdCards = stream
+                    .map(this::toCard)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparing(Card::pciAddress))
+                    .toList();
+        } catch (IOException e) {
+            log.debug("Could not list {}", drmRoot, e);
+            return List.of();
+        }
+
+        // ROCm numbers its devices 0..n-1 in PCI bus order, the DRM card number is only a label
+        List<Card> cards = new ArrayList<>();
+        for (int ordinal = 0; ordinal < amdCards.size(); ordinal++) {
+            Card card = amdCards.get(ordinal);
+            Card numbered = new Card(ordinal, card.name(), card.pciAddress(),
+                    card.busyPercent(), card.vramUsed(), card.vramTotal());
+            if (numbered.isReadable()) {
+                cards.add(numbered);
+            }
+        }
+        return cards;
+    }
+
+    private Card toCard(Path cardPath) {
+        String name = cardPath.getFileName().toString();
+        if (!CARD_PATTERN.matcher(name).matches()) {
+            return null;
+        }
+        Path device = cardPath.resolve("device");
+        try {
+            Path vendor = device.resolve("vendor");
+            if (!Files.isReadable(vendor)
+                    || !AMD_VENDOR.equals(Files.readString(vendor, StandardCharsets.US_ASCII).trim())) {
+                return null;
+            }
+            String pciAddress = device.toRealPath().getFileName().toString();
+            return new Card(-1, name, pciAddress,
+                    device.resolve("gpu_busy_percent"),
+                    device.resolve("mem_info_vram_used"),
+                    device.resolve("mem_info_vram_total"));
+        } catch (IOException e) {
+            log.debug("Could not inspect {}", cardPath, e);
+            return null;
+        }
+    }
+
+    private static boolean hasEntries(Path folder) {
+        if (!Files.isDirectory(folder)) {
+            return false;
+        }
+        try (Stream<Path> entries = Files.list(folder)) {
+            return entries.findAny().isPresent();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long readLong(Path path) throws IOException {
+        return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.US_ASCII).trim());
+    }
+}
@@ -0,0 +1,53 @@
+package de.hthoene.loralite.util;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+@RestController
+public class ThumbnailController {
+    static final String PATH = "thumbnails/";
+
+    private final ThumbnailService thumbnailService;
+    private final ThumbnailProperties thumbnailProperties;
+
+    public ThumbnailController(ThumbnailService thumbnailService, ThumbnailProperties thumbnailProperties) {
+        this.thumbnailService = thumbnailService;
+        this.thumbnailProperties = thumbnailProperties;
+    }
+
+    @GetMapping("/" + PATH + "{key}.jpg")
+    public ResponseEntity<Resource> thumbnail(@PathVariable String key, WebRequest request) {
+        Optional<Path> image = thumbnailService.published(key);
+        if (image.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"" + key + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        Optional<Path> thumbnail = thumbnailService.thumbnail(image.get());
+        Path served = thumbnail.orElse(image.get());
+        MediaType contentType = thumbnail.isPresent()
+                ? MediaType.IMAGE_JPEG
+                : MediaTypeFactory.getMediaType(served.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(thumbnailProperties.getMaxAgeSeconds())).cachePrivate())
+                .eTag(etag)
+                .contentType(contentType)
+                .body(new FileSystemResource(served));
+    }
+}
@@ -0,0 +1,64 @@
+package de.hthoene.loralite.util;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+@ConfigurationProperties(prefix = "loralite.thumbnail")
+public class ThumbnailProperties {
+    private String cache = "/workspace/thumbnails";
+    private int maxEdge = 320;
+    private float quality = 0.8f;
+    private long cacheSizeMb = 512;
+    private long maxAgeSeconds = 86_400;
+
+    public Path getCachePath() {
+        return Path.of(cache);
+    }
+
+    public long getCacheSizeBytes() {
+        return Math.max(1, cacheSizeMb) * 1024 * 1024;
+    }
+
+    public String getCache() {
+        return cache;
+    }
+
+    public void setCache(String cache) {
+        this.cache = cache;
+    }
+
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+
+    public void setMaxEdge(int maxEdge) {
+        this.maxEdge = maxEdge;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    public void setQuality(float quality) {
+        this.quality = quality;
+    }
+
+    public long getCacheSizeMb() {
+        return cacheSizeMb;
+    }
+
+    public void setCacheSizeMb(long cacheSizeMb) {
+        this.cacheSizeMb = cacheSizeMb;
+    }
+
+    public long getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    public void setMaxAgeSeconds(long maxAgeSeconds) {
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+}
@@ -0,0 +1,247 @@
+package de.hthoene.loralite.util;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class ThumbnailService {
+    private static final String THUMBNAIL_EXTENSION = ".jpg";
+    private static final int MAX_PUBLISHED = 20_000;
+
+    private final ThumbnailProperties thumbnailProperties;
+    private final Path cachePath;
+    private final ExecutorService workers;
+
+    private final Map<String, CompletableFuture<Optional<Path>>> inFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Long> cachedSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    // only images a view has asked for can be fetched by key, least recently shown ones are forgotten first
+    private final Map<String, Path> published = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Path> eldest) {
+            return size() > MAX_PUBLISHED;
+        }
+    };
+
+    public ThumbnailService(ThumbnailProperties thumbnailProperties) {
+        this.thumbnailProperties = thumbnailProperties;
+        this.cachePath = thumbnailProperties.getCachePath();
+        this.workers = Executors.newFixedThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                Thread.ofPlatform().name("thumbnail-", 0).daemon(true).factory());
+    }
+
+    @PostConstruct
+    void loadCache() {
+        if (!Files.isDirectory(cachePath)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(cachePath)) {
+            files.filter(file -> file.getFileName().toString().endsWith(THUMBNAIL_EXTENSION))
+                    .sorted(Comparator.comparing(ThumbnailService::lastModified))
+                    .forEach(file -> {
+                        try {
+                            remember(key(file), Files.size(file));
+                        } catch (IOException e) {
+                            log.debug("Could not read cached thumbnail {}", file, e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Could not read thumbnail cache {}", cachePath, e);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
+    public void prefetch(Collection<Path> images) {
+        images.forEach(this::thumbnailAsync);
+    }
+
+    public Optional<Path> thumbnail(Path image) {
+        return thumbnailAsync(image).join();
+    }
+
+    public String url(Path image) {
+        try {
+            String key = cacheKey(image);
+            synchronized (published) {
+                published.put(key, image);
+            }
+            // the key changes with the image, so the browser can keep the response for as long as it likes
+            return ThumbnailController.PATH + key + THUMBNAIL_EXTENSION;
+        } catch (IOException e) {
+            log.debug("Could not read image {}", image, e);
+            return "";
+        }
+    }
+
+    public Optional<Path> published(String key) {
+        synchronized (published) {
+            return Optional.ofNullable(published.get(key));
+        }
+    }
+
+    private CompletableFuture<Optional<Path>> thumbnailAsync(Path image) {
+        String key;
+        try {
+            key = cacheKey(image);
+        } catch (IOException e) {
+            log.debug("Could not read image {}", image, e);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        Path thumbnail = cachePath.resolve(key + THUMBNAIL_EXTENSION);
+        if (Files.exists(thumbnail)) {
+            touch(key, thumbnail);
+            return CompletableFuture.completedFuture(Optional.of(thumbnail));
+        }
+
+        CompletableFuture<Optional<Path>> pending = new CompletableFuture<>();
+        CompletableFuture<Optional<Path>> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            return existing;
+        }
+        workers.execute(() -> {
+            try {
+                pending.complete(generate(image, thumbnail));
+            } finally {
+                inFlight.remove(key, pending);
+            }
+        });
+        return pending;
+    }
+
+    private Optional<Path> generate(Path image, Path thumbnail) {
+        try {
+            BufferedImage source = ImageIO.read(image.toFile());
+            if (source == null) {
+                log.debug("No image reader for {}, serving the original", image);
+                return Optional.empty();
+            }
+
+            BufferedImage scaled = ImageScaler.fitWithin(source, thumbnailProperties.getMaxEdge(), false);
+
+            Files.createDirectories(cachePath);
+            Path tempFile = Files.createTempFile(cachePath, "thumbnail-", ".tmp");
+            try {
+                writeJpeg(scaled, tempFile);
+                Files.move(tempFile, thumbnail, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+
+            remember(key(thumbnail), Files.size(thumbnail));
+            return Optional.of(thumbnail);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not create thumbnail for {}", image, e);
+            return Optional.empty();
+        }
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(thumbnailProperties.getQuality());
+
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void touch(String key, Path thumbnail) {
+        synchronized (cachedSizes) {
+            cachedSizes.get(key);
+        }
+        try {
+            Files.setLastModifiedTime(thumbnail, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("Could not touch thumbnail {}", thumbnail, e);
+        }
+    }
+
+    private void remember(String key, long size) {
+        synchronized (cachedSizes) {
+            Long previous = cachedSizes.put(key, size);
+            cachedBytes += size - (previous != null ? previous : 0);
+
+            Iterator<Map.Entry<String, Long>> eldest = cachedSizes.entrySet().iterator();
+            while (cachedBytes > thumbnailProperties.getCacheSizeBytes() && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(cachePath.resolve(entry.getKey() + THUMBNAIL_EXTENSION));
+                } catch (IOException e) {
+                    log.debug("Could not evict thumbnail {}", entry.getKey(), e);
+                }
+                cachedBytes -= entry.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static String cacheKey(Path image) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(image, BasicFileAttributes.class);
+        String identity = image.toAbsolutePath().normalize() + "|" + attributes.lastModifiedTime().toMillis()
+                + "|" + attributes.size();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(identity.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String key(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
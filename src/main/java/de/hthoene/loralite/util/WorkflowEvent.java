@@ -0,0 +1,42 @@
+package de.hthoene.loralite.util;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+public sealed interface WorkflowEvent {
+
+    record GpuStatsUpdated(GpuStats stats) implements WorkflowEvent {
+    }
+
+    record OutputChanged(Path outputFolder, List<Path> samples, List<Path> checkpoints) implements WorkflowEvent {
+    }
+
+    record JobsChanged() implements WorkflowEvent {
+    }
+
+    record MetricsUpdated(String jobId) implements WorkflowEvent {
+    }
+
+    record DatasetChanged(Set<Path> images, boolean structural) implements WorkflowEvent {
+    }
+
+    record ArchiveProgress(State state,
+                           long filesDone,
+                           long filesTotal,
+                           long bytesDone,
+                           long bytesTotal,
+                           String message) implements WorkflowEvent {
+
+        public enum State {
+            RUNNING,
+            COMPLETED,
+            CANCELLED,
+            FAILED
+        }
+
+        public double fraction() {
+            return bytesTotal > 0 ? (double) bytesDone / bytesTotal : filesTotal > 0 ? (double) filesDone / filesTotal : 0;
+        }
+    }
+}
@@ -13,9 +13,13 @@ public class WorkspaceProperties {
     private String output = "/workspace/output";
     private String logs = "/workspace/logs";
     private String archive = "/workspace/archive";
+    private String archiveSecondary = "";
     private String templates = "/workspace/templates";
     private String monitor = "/workspace/monitor";
     private String aiToolkit = "/workspace/ai-toolkit";
+    private String latentCache = "/workspace/cache/latents";
+    private String backups = "/workspace/backups";
+    private String imports = "/workspace/imports";
 
     public Path getConfigsPath() {
         return Path.of(configs);
@@ -37,6 +41,10 @@ public class WorkspaceProperties {
         return Path.of(archive);
     }
 
+    public Path getArchiveSecondaryPath() {
+        return archiveSecondary == null || archiveSecondary.isBlank() ? null : Path.of(archiveSecondary);
+    }
+
     public Path getTemplatesPath() {
         return Path.of(templates);
     }
@@ -49,6 +57,18 @@ public class WorkspaceProperties {
         return Path.of(aiToolkit);
     }
 
+    public Path getLatentCachePath() {
+        return Path.of(latentCache);
+    }
+
+    public Path getBackupsPath() {
+        return Path.of(backups);
+    }
+
+    public Path getImportsPath() {
+        return Path.of(imports);
+    }
+
     public String getConfigs() {
         return configs;
     }
@@ -89,6 +109,14 @@ public class WorkspaceProperties {
         this.archive = archive;
     }
 
+    public String getArchiveSecondary() {
+        return archiveSecondary;
+    }
+
+    public void setArchiveSecondary(String archiveSecondary) {
+        this.archiveSecondary = archiveSecondary;
+    }
+
     public String getTemplates() {
         return templates;
     }
@@ -112,4 +140,28 @@ public class WorkspaceProperties {
     public void setAiToolkit(String aiToolkit) {
         this.aiToolkit = aiToolkit;
     }
+
+    public String getLatentCache() {
+        return latentCache;
+    }
+
+    public void setLatentCache(String latentCache) {
+        this.latentCache = latentCache;
+    }
+
+    public String getBackups() {
+        return backups;
+    }
+
+    public void setBackups(String backups) {
+        this.backups = backups;
+    }
+
+    public String getImports() {
+        return imports;
+    }
+
+    public void setImports(String imports) {
+        this.imports = imports;
+    }
 }
@@ -0,0 +1,171 @@
+package de.hthoene.loralite.view;
+
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Anchor;
+import com.vaadin.flow.component.html.Image;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.data.provider.CallbackDataProvider;
+import com.vaadin.flow.data.provider.ConfigurableFilterDataProvider;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.value.ValueChangeMode;
+import com.vaadin.flow.server.streams.DownloadHandler;
+import de.hthoene.loralite.component.LogPanel;
+import de.hthoene.loralite.util.ArchiveCatalog;
+import de.hthoene.loralite.util.ArchiveEntry;
+import de.hthoene.loralite.util.ArchiveService;
+import de.hthoene.loralite.util.ThumbnailService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+@Slf4j
+public class ArchiveView extends VerticalLayout {
+
+    private static final DateTimeFormatter ARCHIVE_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final ArchiveService archiveService;
+    private final LogPanel logPanel;
+    private final ThumbnailService thumbnailService;
+
+    private final Grid<ArchiveEntry> archiveGrid = new Grid<>();
+    private final ConfigurableFilterDataProvider<ArchiveEntry, Void, String> dataProvider;
+
+    public ArchiveView(ArchiveService archiveService, LogPanel logPanel, ThumbnailService thumbnailService) {
+        this.archiveService = archiveService;
+        this.logPanel = logPanel;
+        this.thumbnailService = thumbnailService;
+
+        setPadding(true);
+        setSpacing(true);
+        setAlignItems(Alignment.CENTER);
+
+        ArchiveCatalog catalog = archiveService.getCatalog();
+        CallbackDataProvider<ArchiveEntry, String> callbackProvider = DataProvider.fromFilteringCallbacks(
+                query -> catalog.query(query.getFilter().orElse(null), query.getOffset(), query.getLimit()).stream(),
+                query -> catalog.count(query.getFilter().orElse(null)));
+        dataProvider = callbackProvider.withConfigurableFilter();
+
+        TextField searchField = new TextField();
+        searchField.setPlaceholder("Search by name, job, trigger word or model");
+        searchField.setWidthFull();
+        searchField.setClearButtonVisible(true);
+        searchField.setValueChangeMode(ValueChangeMode.LAZY);
+        searchField.addValueChangeListener(event -> dataProvider.setFilter(event.getValue()));
+
+        setupArchiveGrid();
+
+        add(createImportUpload(), searchField, archiveGrid);
+    }
+
+    private void setupArchiveGrid() {
+        archiveGrid.setWidthFull();
+        archiveGrid.setHeight("40rem");
+        archiveGrid.setPageSize(50);
+        archiveGrid.setItems(dataProvider);
+        archiveGrid.addComponentColumn(this::createThumbnail).setHeader("Sample").setAutoWidth(true);
+        archiveGrid.addColumn(entry -> ARCHIVE_TIME_FORMATTER.format(entry.getArchivedAt()))
+                .setHeader("Archived")
+                .setAutoWidth(true);
+        archiveGrid.addColumn(entry -> String.join(", ", entry.getTriggerWords()))
+                .setHeader("Trigger word")
+                .setAutoWidth(true);
+        archiveGrid.addColumn(entry -> String.join(", ", entry.getModels()))
+                .setHeader("Model")
+                .setFlexGrow(1);
+        archiveGrid.addColumn(entry -> entry.getLastStep() != null
+                        ? entry.getLastStep() + " / " + entry.getTotalSteps()
+                        : "-")
+                .setHeader("Steps")
+                .setAutoWidth(true);
+        archiveGrid.addColumn(entry -> entry.getFinalLoss() != null
+                        ? String.format(Locale.ROOT, "%.4f", entry.getFinalLoss())
+                        : "-")
+                .setHeader("Final loss")
+                .setAutoWidth(true);
+        archiveGrid.addColumn(entry -> String.format(Locale.ROOT, "%d (%.1f GB)",
+                        entry.getCheckpointCount(), entry.getCheckpointBytes() / 1e9))
+                .setHeader("Checkpoints")
+                .setAutoWidth(true);
+        archiveGrid.addComponentColumn(this::createDownloadLink).setHeader("Export").setAutoWidth(true);
+    }
+
+    private Image createThumbnail(ArchiveEntry entry) {
+        Image image = new Image();
+        image.setHeight("3rem");
+        if (entry.getThumbnail() == null) {
+            return image;
+        }
+        try {
+            Path thumbnail = archiveService.getArchiveFolder(entry.getName()).resolve(entry.getThumbnail());
+            if (Files.isRegularFile(thumbnail)) {
+                image.setSrc(thumbnailService.url(thumbnail));
+                image.setAlt(entry.getName());
+            }
+        } catch (IOException e) {
+            log.debug("Could not resolve thumbnail for archive {}", entry.getName(), e);
+        }
+        return image;
+    }
+
+    private Upload createImportUpload() {
+        Upload importUpload = new Upload();
+        importUpload.setDropLabel(new Span("Select or drop an exported archive (.zip) to import it"));
+        importUpload.setAcceptedFileTypes("application/zip", ".zip");
+        importUpload.setMaxFiles(1);
+
+        importUpload.setUploadHandler(event -> {
+            try {
+                String name = archiveService.importArchive(event.getInputStream());
+                event.getUI().access(() -> logPanel.log("Imported archive " + name));
+            } catch (IOException e) {
+                log.warn("Could not import archive {}", event.getFileName(), e);
+                event.getUI().access(() -> {
+                    Notification notification = Notification.show("Could not import archive: " + e.getMessage());
+                    notification.addThemeVariants(NotificationVariant.LUMO_ERROR);
+                    notification.setDuration(5000);
+                    logPanel.log(e);
+                });
+            }
+        });
+
+        importUpload.addAllFinishedListener(event -> {
+            importUpload.clearFileList();
+            refresh();
+        });
+
+        return importUpload;
+    }
+
+    private Anchor createDownloadLink(ArchiveEntry entry) {
+        String name = entry.getName();
+        DownloadHandler handler = event -> {
+            event.setFileName(name + ".zip");
+            event.setContentType("application/zip");
+            try (OutputStream out = event.getOutputStream()) {
+                archiveService.exportArchive(name, out);
+            }
+        };
+
+        Anchor anchor = new Anchor(handler, "");
+        anchor.getElement().setAttribute("download", true);
+        anchor.add(new Button("Download .zip"));
+        return anchor;
+    }
+
+    public void refresh() {
+        dataProvider.refreshAll();
+    }
+}
@@ -4,9 +4,12 @@ import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.IntegerField;
 import de.hthoene.loralite.aitoolkit.AiToolkitService;
 import de.hthoene.loralite.aitoolkit.JobConfiguration;
+import de.hthoene.loralite.aitoolkit.TrainingJob;
 import de.hthoene.loralite.component.LogPanel;
 import de.hthoene.loralite.template.TemplateService;
 import de.hthoene.loralite.view.flux.ConfigurationForm;
@@ -27,12 +30,20 @@ public class ConfigurationView extends VerticalLayout {
         ConfigurationForm configurationForm =
                 new ConfigurationForm(templateService, uiSettingsService);
 
+        IntegerField priorityField = new IntegerField("Queue Priority");
+        priorityField.setValue(0);
+        priorityField.setStepButtonsVisible(true);
+        priorityField.setTitle("Queued jobs with a higher priority are started first. Equal priorities run in submission order.");
+
         Button startButton = new Button("Start Training", _ -> {
             try {
                 JobConfiguration config = configurationForm.buildConfig();
-                logPanel.log("Starting training: " + config.getConfig().getName());
-                aiToolkitService.train(config);
-                Notification notification = Notification.show("Training started");
+                int priority = priorityField.getValue() != null ? priorityField.getValue() : 0;
+                TrainingJob job = aiToolkitService.enqueue(config, priority);
+                logPanel.log("Queued training job: " + job.getId());
+                Notification notification = job.getStatus() == TrainingJob.Status.RUNNING
+                        ? Notification.show("Training started")
+                        : Notification.show("Training queued (" + aiToolkitService.getQueuedCount() + " waiting)");
                 notification.addThemeVariants(NotificationVariant.LUMO_SUCCESS);
             } catch (IOException e) {
                 logPanel.log(e);
@@ -42,6 +53,9 @@ public class ConfigurationView extends VerticalLayout {
         });
         startButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
 
-        add(configurationForm, startButton);
+        HorizontalLayout startLayout = new HorizontalLayout(priorityField, startButton);
+        startLayout.setAlignItems(Alignment.BASELINE);
+
+        add(configurationForm, startLayout);
     }
 }
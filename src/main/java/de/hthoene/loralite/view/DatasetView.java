@@ -1,48 +1,154 @@
 package de.hthoene.loralite.view;
 
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.checkbox.Checkbox;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.html.Image;
 import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.component.virtuallist.VirtualList;
+import com.vaadin.flow.data.provider.CallbackDataProvider;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.shared.Registration;
 import de.hthoene.loralite.component.DatasetEntry;
 import de.hthoene.loralite.component.LogPanel;
+import de.hthoene.loralite.util.CaptionStore;
+import de.hthoene.loralite.util.DatasetIndex;
+import de.hthoene.loralite.util.DatasetUploadService;
+import de.hthoene.loralite.util.DuplicateFinder;
+import de.hthoene.loralite.util.EventBroadcaster;
+import de.hthoene.loralite.util.ImageEditService;
+import de.hthoene.loralite.util.ThumbnailService;
+import de.hthoene.loralite.util.WorkflowEvent;
+import de.hthoene.loralite.view.flux.UiSettings;
+import de.hthoene.loralite.view.flux.UiSettingsService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
-import org.springframework.core.env.Environment;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class DatasetView extends VerticalLayout {
-    private static final String[] ALLOWED_IMAGE_FILE_TYPES = { "png", "jpg", "jpeg", "webp" };
 
     private final LogPanel logPanel;
+    private final DatasetIndex datasetIndex;
+    private final ThumbnailService thumbnailService;
+    private final CaptionStore captionStore;
+    private final EventBroadcaster eventBroadcaster;
+    private final DatasetUploadService uploadService;
+    private final UiSettingsService uiSettingsService;
+    private final DuplicateFinder duplicateFinder;
+    private final ImageEditService imageEditService;
     private final Path datasetPath;
-    private final VerticalLayout datasetLayout = new VerticalLayout();
+    private final VirtualList<DatasetIndex.DatasetItem> datasetList = new VirtualList<>();
+    private final Span emptyLabel = new Span("No dataset files yet");
+    private final Span uploadSummary = new Span();
+    private final Checkbox downsizeCheckbox = new Checkbox("Downsize uploads to the training resolution");
+    private final TextField folderField = new TextField();
+    private final Button importFolderButton = new Button("Import folder");
+    private final Button findDuplicatesButton = new Button("Find duplicates");
+    private final VerticalLayout duplicatesLayout = new VerticalLayout();
+    private final Map<DatasetUploadService.Status, Integer> uploadCounts =
+            new EnumMap<>(DatasetUploadService.Status.class);
+    private final CallbackDataProvider<DatasetIndex.DatasetItem, Void> dataProvider;
 
-    public DatasetView(LogPanel logPanel, Environment environment) {
+    private List<DatasetIndex.DatasetItem> items = List.of();
+    private boolean uploadBatchActive;
+    private volatile Integer uploadMaxEdge;
+    private Registration eventRegistration;
+
+    public DatasetView(LogPanel logPanel,
+                       DatasetIndex datasetIndex,
+                       ThumbnailService thumbnailService,
+                       CaptionStore captionStore,
+                       EventBroadcaster eventBroadcaster,
+                       DatasetUploadService uploadService,
+                       UiSettingsService uiSettingsService,
+                       DuplicateFinder duplicateFinder,
+                       ImageEditService imageEditService) {
         this.logPanel = logPanel;
+        this.datasetIndex = datasetIndex;
+        this.thumbnailService = thumbnailService;
+        this.captionStore = captionStore;
+        this.eventBroadcaster = eventBroadcaster;
+        this.uploadService = uploadService;
+        this.uiSettingsService = uiSettingsService;
+        this.duplicateFinder = duplicateFinder;
+        this.imageEditService = imageEditService;
 
         setAlignItems(Alignment.CENTER);
 
-        this.datasetPath = Paths
-                .get(environment.getProperty("loralite.folder.dataset", "/workspace/dataset"))
-                .resolve("latest");
+        this.datasetPath = datasetIndex.getDatasetPath();
         createDatasetDirectory();
 
         Upload datasetUpload = createUploadComponent();
-        add(datasetUpload);
+        uploadSummary.getStyle().set("font-size", "var(--lumo-font-size-s)");
+        downsizeCheckbox.addValueChangeListener(_ -> updateUploadMaxEdge());
+        add(datasetUpload, createFolderImport(), downsizeCheckbox, uploadSummary);
+
+        findDuplicatesButton.addClickListener(_ -> findDuplicates());
+        duplicatesLayout.setPadding(false);
+        duplicatesLayout.setVisible(false);
+        add(findDuplicatesButton, duplicatesLayout);
+
+        dataProvider = new CallbackDataProvider<>(
+                query -> items.stream().skip(query.getOffset()).limit(query.getLimit()),
+                query -> items.size(),
+                DatasetIndex.DatasetItem::image);
+
+        datasetList.setWidthFull();
+        datasetList.setHeight("70vh");
+        datasetList.setRenderer(new ComponentRenderer<>(this::createDatasetEntry));
+        datasetList.setDataProvider(dataProvider);
+        add(emptyLabel, datasetList);
 
-        datasetLayout.setAlignItems(Alignment.CENTER);
-        add(datasetLayout);
+        updateDatasetPresentation();
+    }
 
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        eventRegistration = eventBroadcaster.register(event -> {
+            if (event instanceof WorkflowEvent.DatasetChanged changed) {
+                ui.access(() -> onDatasetChanged(changed));
+            }
+        });
+        updateUploadMaxEdge();
         updateDatasetPresentation();
     }
 
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (eventRegistration != null) {
+            eventRegistration.remove();
+            eventRegistration = null;
+        }
+    }
+
+    private void onDatasetChanged(WorkflowEvent.DatasetChanged changed) {
+        if (changed.structural()) {
+            updateDatasetPresentation();
+            return;
+        }
+        items = datasetIndex.list();
+        changed.images().forEach(image -> datasetIndex.get(image).ifPresent(dataProvider::refreshItem));
+    }
+
     private void createDatasetDirectory() {
         try {
             Files.createDirectories(datasetPath);
@@ -55,55 +161,201 @@ public class DatasetView extends VerticalLayout {
 
     private Upload createUploadComponent() {
         Upload datasetUpload = new Upload();
-        datasetUpload.setDropLabel(new Span("Select or drop images or text files"));
+        datasetUpload.setDropLabel(new Span("Select or drop images, text files or zip/tar archives"));
         datasetUpload.setAcceptedFileTypes(
-                "image/jpeg", "image/jpg", "image/png", "image/webp", "text/plain"
+                "image/jpeg", "image/jpg", "image/png", "image/webp", "text/plain",
+                "application/zip", "application/x-tar", "application/gzip", ".zip", ".tar", ".tgz", ".gz"
         );
 
         datasetUpload.setUploadHandler(event -> {
-            try {
-                Files.createDirectories(datasetPath);
-                Path outputPath = datasetPath.resolve(event.getFileName());
-                Files.copy(event.getInputStream(), outputPath, StandardCopyOption.REPLACE_EXISTING);
-            } catch (IOException e) {
-                logPanel.log(e);
+            UI ui = event.getUI();
+            ui.access(this::beginUploadBatch);
+            if (DatasetUploadService.isArchive(event.getFileName())) {
+                uploadService.ingestArchive(event.getFileName(), event.getInputStream(), uploadMaxEdge)
+                        .forEach(result -> reportWhenProcessed(ui, result));
+            } else {
+                reportWhenProcessed(ui, uploadService.upload(event.getFileName(), event.getInputStream(), uploadMaxEdge));
             }
         });
 
         datasetUpload.addAllFinishedListener(event -> {
             datasetUpload.clearFileList();
-            updateDatasetPresentation();
+            uploadBatchActive = false;
         });
 
         return datasetUpload;
     }
 
-    public void updateDatasetPresentation() {
-        datasetLayout.removeAll();
+    private HorizontalLayout createFolderImport() {
+        folderField.setPlaceholder("Folder inside " + uploadService.getImportsPath());
+        folderField.setWidth("24em");
+        importFolderButton.addClickListener(_ -> importFolder());
 
-        File[] files = datasetPath.toFile().listFiles();
-        if (files == null || files.length == 0) {
-            datasetLayout.add(new Span("No dataset files yet"));
+        HorizontalLayout layout = new HorizontalLayout(folderField, importFolderButton);
+        layout.setAlignItems(Alignment.BASELINE);
+        return layout;
+    }
+
+    private void importFolder() {
+        if (folderField.isEmpty()) {
             return;
         }
+        String folder = folderField.getValue().trim();
+        Integer maxEdge = uploadMaxEdge;
+        UI ui = UI.getCurrent();
+        uploadCounts.clear();
+        importFolderButton.setEnabled(false);
+        logPanel.log("Importing dataset files from " + folder);
 
-        for (File file : files) {
-            if (!file.isFile()) {
-                continue;
-            }
-            boolean isImage = FilenameUtils.isExtension(file.getName(), ALLOWED_IMAGE_FILE_TYPES);
-            if (!isImage) {
-                continue;
+        Thread.ofVirtual().name("dataset-folder-import").start(() -> {
+            try {
+                uploadService.ingestFolder(folder, maxEdge).forEach(result -> reportWhenProcessed(ui, result));
+            } catch (IOException e) {
+                log.warn("Could not import folder {}", folder, e);
+                ui.access(() -> logPanel.log("Could not import " + folder + ": " + e.getMessage()));
+            } finally {
+                ui.access(() -> importFolderButton.setEnabled(true));
             }
+        });
+    }
+
+    private void reportWhenProcessed(UI ui, CompletableFuture<DatasetUploadService.UploadResult> result) {
+        result.thenAccept(processed -> ui.access(() -> onUploadProcessed(processed)));
+    }
 
-            String baseName = FilenameUtils.getBaseName(file.getName());
-            File captionFile = datasetPath.resolve(baseName + ".txt").toFile();
-            ensureCaptionFileExists(captionFile);
+    private void findDuplicates() {
+        UI ui = UI.getCurrent();
+        findDuplicatesButton.setEnabled(false);
+        findDuplicatesButton.setText("Searching duplicates...");
+        duplicateFinder.findDuplicates(DuplicateFinder.DEFAULT_MAX_DISTANCE)
+                .whenComplete((clusters, error) -> ui.access(() -> {
+                    findDuplicatesButton.setEnabled(true);
+                    findDuplicatesButton.setText("Find duplicates");
+                    if (error != null) {
+                        log.warn("Could not search duplicates", error);
+                        logPanel.log("Could not search duplicates: " + error.getMessage());
+                        return;
+                    }
+                    showDuplicates(clusters);
+                }));
+    }
 
-            DatasetEntry datasetEntry =
-                    new DatasetEntry(file, captionFile, logPanel, refresh -> updateDatasetPresentation());
-            datasetLayout.add(datasetEntry);
+    private void showDuplicates(List<DuplicateFinder.DuplicateCluster> clusters) {
+        duplicatesLayout.removeAll();
+        duplicatesLayout.setVisible(true);
+        if (clusters.isEmpty()) {
+            duplicatesLayout.add(new Span("No duplicates found"));
+            return;
         }
+        duplicatesLayout.add(new Span(clusters.size() + " groups of similar images"));
+        clusters.forEach(cluster -> duplicatesLayout.add(createClusterLayout(cluster)));
+    }
+
+    private HorizontalLayout createClusterLayout(DuplicateFinder.DuplicateCluster cluster) {
+        HorizontalLayout clusterLayout = new HorizontalLayout();
+        clusterLayout.setAlignItems(Alignment.END);
+        clusterLayout.getStyle().set("flex-wrap", "wrap");
+
+        for (DatasetIndex.DatasetItem item : cluster.items()) {
+            Image thumbnail = new Image(thumbnailService.url(item.image()), item.image().getFileName().toString());
+            thumbnail.setHeight("96px");
+            Span label = new Span(item.image().getFileName() + " (" + item.width() + "x" + item.height() + ")");
+            label.getStyle().set("font-size", "var(--lumo-font-size-xs)");
+
+            VerticalLayout card = new VerticalLayout(thumbnail, label);
+            card.setPadding(false);
+            card.setSpacing(false);
+            Button removeButton = new Button("Remove", _ -> {
+                if (removeDatasetImage(item)) {
+                    clusterLayout.remove(card);
+                }
+            });
+            removeButton.addThemeVariants(ButtonVariant.LUMO_ERROR, ButtonVariant.LUMO_SMALL);
+            card.add(removeButton);
+            clusterLayout.add(card);
+        }
+
+        // the largest image keeps the most detail, everything else in the group is redundant
+        DatasetIndex.DatasetItem largest = cluster.items().stream()
+                .max(Comparator.comparingLong(item -> (long) item.width() * item.height()))
+                .orElseThrow();
+        Button keepLargestButton = new Button("Keep largest", _ -> {
+            cluster.items().stream()
+                    .filter(item -> !item.equals(largest))
+                    .forEach(this::removeDatasetImage);
+            duplicatesLayout.remove(clusterLayout);
+        });
+        keepLargestButton.addThemeVariants(ButtonVariant.LUMO_SMALL);
+        clusterLayout.add(keepLargestButton);
+        return clusterLayout;
+    }
+
+    private boolean removeDatasetImage(DatasetIndex.DatasetItem item) {
+        Path caption = datasetPath.resolve(FilenameUtils.getBaseName(item.image().getFileName().toString()) + ".txt");
+        captionStore.discard(caption);
+        try {
+            Files.deleteIfExists(item.image());
+            Files.deleteIfExists(caption);
+            imageEditService.discardBackups(item.image());
+        } catch (IOException e) {
+            log.warn("Could not remove {}", item.image(), e);
+            logPanel.log(e);
+            return false;
+        }
+        logPanel.log("Removed duplicate " + item.image().getFileName());
+        return true;
+    }
+
+    private void beginUploadBatch() {
+        if (!uploadBatchActive) {
+            uploadBatchActive = true;
+            uploadCounts.clear();
+        }
+    }
+
+    private void updateUploadMaxEdge() {
+        uploadMaxEdge = downsizeCheckbox.getValue() ? trainingResolution() : null;
+    }
+
+    private Integer trainingResolution() {
+        UiSettings settings = uiSettingsService.load();
+        if (settings.getResolutionX() == null && settings.getResolutionY() == null) {
+            return null;
+        }
+        return Math.max(
+                settings.getResolutionX() != null ? settings.getResolutionX() : 0,
+                settings.getResolutionY() != null ? settings.getResolutionY() : 0);
+    }
+
+    private void onUploadProcessed(DatasetUploadService.UploadResult result) {
+        uploadCounts.merge(result.status(), 1, Integer::sum);
+        uploadSummary.setText(uploadCounts.entrySet().stream()
+                .map(entry -> entry.getValue() + " " + entry.getKey().name().toLowerCase())
+                .collect(Collectors.joining(", ", "Last upload: ", "")));
+
+        if (result.status() == DatasetUploadService.Status.REJECTED) {
+            logPanel.log("Rejected upload " + result.fileName() + ": " + result.message());
+        } else if (result.message() != null) {
+            logPanel.log("Uploaded " + result.fileName() + ": " + result.message());
+        }
+    }
+
+    public void updateDatasetPresentation() {
+        items = datasetIndex.list();
+
+        emptyLabel.setVisible(items.isEmpty());
+        datasetList.setVisible(!items.isEmpty());
+        dataProvider.refreshAll();
+    }
+
+    private DatasetEntry createDatasetEntry(DatasetIndex.DatasetItem item) {
+        File imageFile = item.image().toFile();
+        String baseName = FilenameUtils.getBaseName(imageFile.getName());
+        File captionFile = datasetPath.resolve(baseName + ".txt").toFile();
+        ensureCaptionFileExists(captionFile);
+
+        return new DatasetEntry(imageFile, captionFile, logPanel, thumbnailService, captionStore,
+                imageEditService, this::trainingResolution, refresh -> updateDatasetPresentation());
     }
 
     private void ensureCaptionFileExists(File captionFile) {
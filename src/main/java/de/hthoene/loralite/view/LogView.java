@@ -4,23 +4,18 @@ import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.shared.Registration;
 import de.hthoene.loralite.component.LogPanel;
-import lombok.extern.slf4j.Slf4j;
+import de.hthoene.loralite.util.LogTailService;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-
-@Slf4j
 public class LogView extends VerticalLayout {
     private final LogPanel logPanel;
-    private Thread tailThread;
+    private final LogTailService logTailService;
+    private Registration tailRegistration;
 
-    public LogView(LogPanel logPanel) {
+    public LogView(LogPanel logPanel, LogTailService logTailService) {
         this.logPanel = logPanel;
+        this.logTailService = logTailService;
 
         setSizeFull();
         setPadding(false);
@@ -32,82 +27,18 @@ public class LogView extends VerticalLayout {
     @Override
     protected void onAttach(AttachEvent attachEvent) {
         UI ui = attachEvent.getUI();
-        File logFile = logPanel.getLogFile();
-
-        long startOffset = 0L;
-        try {
-            String all = Files.readString(logFile.toPath(), StandardCharsets.UTF_8);
-            if (!all.isBlank()) {
-                logPanel.appendToUi(all);
-                startOffset = logFile.length();
-            } else {
-                startOffset = logFile.length();
-            }
-        } catch (IOException e) {
-            log.warn("Could not read log file", e);
-            startOffset = logFile.length();
-        }
-
-        final long initialOffset = startOffset;
-        tailThread = new Thread(() -> tailLogFile(ui, logFile, initialOffset), "log-tail-thread");
-        tailThread.setDaemon(true);
-        tailThread.start();
-    }
-
-    private void tailLogFile(UI ui, File logFile, long initialOffset) {
-        long lastSize = initialOffset;
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                long size = logFile.length();
-
-                if (size < lastSize) {
-                    lastSize = 0L;
-                }
-
-                if (size > lastSize) {
-                    String newContent = readFromOffset(logFile.toPath(), lastSize);
-                    lastSize = size;
-
-                    if (!newContent.isBlank()) {
-                        ui.access(() -> logPanel.appendToUi(newContent));
-                    }
-                }
-
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            } catch (IOException e) {
-                log.warn("Could not read log file", e);
-                break;
-            }
-        }
-    }
-
-    private static String readFromOffset(Path path, long offset) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
-            long fileLength = raf.length();
-            if (offset >= fileLength) {
-                return "";
-            }
-            raf.seek(offset);
-
-            long delta = fileLength - offset;
-            int toRead = (int) Math.min(delta, 64 * 1024);
-            byte[] buffer = new byte[toRead];
-            int read = raf.read(buffer);
-            if (read <= 0) {
-                return "";
-            }
-            return new String(buffer, 0, read, StandardCharsets.UTF_8);
-        }
+        logPanel.clearUi();
+        tailRegistration = logTailService.subscribe(
+                logPanel.getLogFile().toPath(),
+                chunk -> ui.access(() -> logPanel.appendToUi(chunk))
+        );
     }
 
     @Override
     protected void onDetach(DetachEvent detachEvent) {
-        if (tailThread != null) {
-            tailThread.interrupt();
-            tailThread = null;
+        if (tailRegistration != null) {
+            tailRegistration.remove();
+            tailRegistration = null;
         }
     }
 }
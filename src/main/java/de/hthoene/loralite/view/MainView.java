@@ -1,70 +1,113 @@
 package de.hthoene.loralite.view;
 
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.confirmdialog.ConfirmDialog;
 import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.NotificationVariant;
 import com.vaadin.flow.component.orderedlayout.FlexComponent;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.component.splitlayout.SplitLayout;
 import com.vaadin.flow.component.tabs.Tab;
 import com.vaadin.flow.component.tabs.Tabs;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
 import de.hthoene.loralite.aitoolkit.AiToolkitService;
+import de.hthoene.loralite.aitoolkit.OutputWatcher;
 import de.hthoene.loralite.component.DefaultFooter;
 import de.hthoene.loralite.component.LogPanel;
 import de.hthoene.loralite.template.TemplateService;
 import de.hthoene.loralite.util.ArchiveService;
+import de.hthoene.loralite.util.CaptionStore;
+import de.hthoene.loralite.util.DatasetIndex;
+import de.hthoene.loralite.util.DatasetUploadService;
+import de.hthoene.loralite.util.DuplicateFinder;
+import de.hthoene.loralite.util.EventBroadcaster;
+import de.hthoene.loralite.util.ImageEditService;
 import de.hthoene.loralite.util.GpuMonitor;
+import de.hthoene.loralite.util.LogProperties;
+import de.hthoene.loralite.util.LogTailService;
+import de.hthoene.loralite.util.ThumbnailService;
+import de.hthoene.loralite.util.WorkflowEvent;
 import de.hthoene.loralite.util.WorkspaceProperties;
 import de.hthoene.loralite.view.flux.UiSettingsService;
-import jakarta.annotation.PreDestroy;
-import org.springframework.core.env.Environment;
 
 import java.io.IOException;
+import java.util.Locale;
 
 @Route("")
 public class MainView extends VerticalLayout {
     private final UiSettingsService uiSettingsService;
     private final AiToolkitService aiToolkitService;
     private final ArchiveService archiveService;
-    private final Environment environment;
     private final TemplateService templateService;
+    private final EventBroadcaster eventBroadcaster;
+    private final ThumbnailService thumbnailService;
+    private final DatasetIndex datasetIndex;
+    private final CaptionStore captionStore;
+    private final DatasetUploadService datasetUploadService;
+    private final DuplicateFinder duplicateFinder;
+    private final ImageEditService imageEditService;
 
     private final LogPanel logPanel;
     private final ProcessView processPage;
+    private DatasetView datasetPage;
+    private ArchiveView archivePage;
 
     private final VerticalLayout primaryLayout = new VerticalLayout();
-    private final UI ui;
+
+    private final Button archiveButton = new Button("Archive Workflow");
+    private final HorizontalLayout archiveProgressLayout = new HorizontalLayout();
+    private final ProgressBar archiveProgressBar = new ProgressBar(0, 1, 0);
+    private final Span archiveProgressLabel = new Span();
+
+    private Registration eventRegistration;
 
     public MainView(AiToolkitService aiToolkitService,
-                    Environment environment,
                     UiSettingsService uiSettingsService,
                     GpuMonitor gpuMonitor,
                     ArchiveService archiveService,
                     TemplateService templateService,
-                    WorkspaceProperties workspaceProperties
+                    WorkspaceProperties workspaceProperties,
+                    EventBroadcaster eventBroadcaster,
+                    OutputWatcher outputWatcher,
+                    LogTailService logTailService,
+                    LogProperties logProperties,
+                    ThumbnailService thumbnailService,
+                    DatasetIndex datasetIndex,
+                    CaptionStore captionStore,
+                    DatasetUploadService datasetUploadService,
+                    DuplicateFinder duplicateFinder,
+                    ImageEditService imageEditService
                     ) throws IOException {
 
         this.aiToolkitService = aiToolkitService;
-        this.environment = environment;
         this.uiSettingsService = uiSettingsService;
         this.archiveService = archiveService;
         this.templateService = templateService;
-
-        this.ui = UI.getCurrent();
+        this.eventBroadcaster = eventBroadcaster;
+        this.thumbnailService = thumbnailService;
+        this.datasetIndex = datasetIndex;
+        this.captionStore = captionStore;
+        this.datasetUploadService = datasetUploadService;
+        this.duplicateFinder = duplicateFinder;
+        this.imageEditService = imageEditService;
 
         setSizeFull();
 
-        this.logPanel = new LogPanel(workspaceProperties);
-        LogView logView = new LogView(logPanel);
+        this.logPanel = new LogPanel(workspaceProperties, logProperties);
+        LogView logView = new LogView(logPanel, logTailService);
         logView.setAlignItems(Alignment.STRETCH);
 
-        this.processPage = new ProcessView(gpuMonitor, logPanel, workspaceProperties, aiToolkitService);
+        this.processPage = new ProcessView(gpuMonitor, logPanel, workspaceProperties, aiToolkitService,
+                eventBroadcaster, outputWatcher, thumbnailService);
 
         SplitLayout splitLayout = new SplitLayout(primaryLayout, logView);
         splitLayout.setSplitterPosition(60);
@@ -77,18 +120,6 @@ public class MainView extends VerticalLayout {
         primaryLayout.add(new DefaultFooter());
 
         add(splitLayout);
-
-        if (ui != null) {
-            ui.setPollInterval(2000);
-            ui.addPollListener(event -> processPage.refresh());
-        }
-    }
-
-    @PreDestroy
-    private void cleanup() {
-        if (ui != null) {
-            ui.setPollInterval(-1);
-        }
     }
 
     private void createTabs(FlexComponent layout) {
@@ -99,13 +130,21 @@ public class MainView extends VerticalLayout {
         Tab datasetTab = new Tab("Dataset");
         Tab configTab = new Tab("Configuration");
         Tab processTab = new Tab("Process");
-        tabs.add(datasetTab, configTab, processTab);
+        Tab archiveTab = new Tab("Archive");
+        tabs.add(datasetTab, configTab, processTab, archiveTab);
 
-        final DatasetView datasetPage = new DatasetView(logPanel, environment);
+        datasetPage = new DatasetView(logPanel, datasetIndex, thumbnailService, captionStore,
+                eventBroadcaster, datasetUploadService, uiSettingsService, duplicateFinder,
+                imageEditService);
 
-        Button archiveButton = new Button("Archive Workflow");
         archiveButton.addThemeVariants(ButtonVariant.LUMO_ERROR, ButtonVariant.LUMO_SMALL);
         archiveButton.addClickListener(event -> {
+            if (aiToolkitService.isRunning()) {
+                showNotification("Stop the running training before archiving the workflow.",
+                        NotificationVariant.LUMO_ERROR);
+                return;
+            }
+
             ConfirmDialog dialog = new ConfirmDialog();
             dialog.setHeader("Archive Current Workflow?");
             dialog.setText(
@@ -116,18 +155,10 @@ public class MainView extends VerticalLayout {
 
             dialog.addConfirmListener(confirmEvent -> {
                 try {
-                    archiveService.archiveAllLatestFolders();
-                    logPanel.clearUi();
-                    Notification notification =
-                            Notification.show("Workflow successfully archived! You can start a new workflow now.");
-                    notification.addThemeVariants(NotificationVariant.LUMO_SUCCESS);
-                    notification.setDuration(5000);
-                    datasetPage.updateDatasetPresentation();
-                } catch (IOException e) {
-                    Notification notification =
-                            Notification.show("Error archiving workflow: " + e.getMessage());
-                    notification.addThemeVariants(NotificationVariant.LUMO_ERROR);
-                    notification.setDuration(5000);
+                    archiveService.startArchive();
+                    archiveButton.setEnabled(false);
+                } catch (IllegalStateException e) {
+                    showNotification("Error archiving workflow: " + e.getMessage(), NotificationVariant.LUMO_ERROR);
                     logPanel.log("Error archiving workflow: " + e.getMessage());
                 }
             });
@@ -135,7 +166,15 @@ public class MainView extends VerticalLayout {
             dialog.open();
         });
 
-        tabsAndButton.add(tabs, archiveButton);
+        Button cancelArchiveButton = new Button("Cancel", e -> archiveService.cancelArchive());
+        cancelArchiveButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY);
+        archiveProgressBar.setWidth("10em");
+        archiveProgressLabel.getStyle().set("font-size", "var(--lumo-font-size-s)");
+        archiveProgressLayout.setAlignItems(Alignment.CENTER);
+        archiveProgressLayout.add(archiveProgressBar, archiveProgressLabel, cancelArchiveButton);
+        archiveProgressLayout.setVisible(false);
+
+        tabsAndButton.add(tabs, archiveButton, archiveProgressLayout);
 
         Div pages = new Div();
         pages.setWidthFull();
@@ -145,18 +184,78 @@ public class MainView extends VerticalLayout {
         VerticalLayout configPage =
                 new ConfigurationView(templateService, uiSettingsService, aiToolkitService, logPanel);
 
-        pages.add(datasetPage, configPage, processPage);
+        archivePage = new ArchiveView(archiveService, logPanel, thumbnailService);
+
+        pages.add(datasetPage, configPage, processPage, archivePage);
 
         datasetPage.setVisible(true);
         configPage.setVisible(false);
         processPage.setVisible(false);
+        archivePage.setVisible(false);
 
         tabs.addSelectedChangeListener(event -> {
             datasetPage.setVisible(event.getSelectedTab() == datasetTab);
             configPage.setVisible(event.getSelectedTab() == configTab);
             processPage.setVisible(event.getSelectedTab() == processTab);
+            archivePage.setVisible(event.getSelectedTab() == archiveTab);
         });
 
         layout.add(tabsAndButton, pages);
     }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        eventRegistration = eventBroadcaster.register(event -> {
+            if (event instanceof WorkflowEvent.ArchiveProgress progress) {
+                ui.access(() -> onArchiveProgress(progress));
+            }
+        });
+
+        if (archiveService.isArchiving() && archiveService.getProgress() != null) {
+            onArchiveProgress(archiveService.getProgress());
+        }
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (eventRegistration != null) {
+            eventRegistration.remove();
+            eventRegistration = null;
+        }
+    }
+
+    private void onArchiveProgress(WorkflowEvent.ArchiveProgress progress) {
+        boolean running = progress.state() == WorkflowEvent.ArchiveProgress.State.RUNNING;
+        archiveButton.setEnabled(!running);
+        archiveProgressLayout.setVisible(running);
+
+        switch (progress.state()) {
+            case RUNNING -> {
+                archiveProgressBar.setValue(Math.clamp(progress.fraction(), 0, 1));
+                archiveProgressLabel.setText(String.format(Locale.ROOT, "%s: %d / %d files, %.1f / %.1f GB",
+                        progress.message() != null ? progress.message() : "Archiving", progress.filesDone(), progress.filesTotal(),
+                        progress.bytesDone() / 1e9, progress.bytesTotal() / 1e9));
+            }
+            case COMPLETED -> {
+                logPanel.clearUi();
+                datasetPage.updateDatasetPresentation();
+                archivePage.refresh();
+                showNotification("Workflow successfully archived! You can start a new workflow now.",
+                        NotificationVariant.LUMO_SUCCESS);
+            }
+            case CANCELLED -> showNotification("Archiving cancelled, the workflow was restored.",
+                    NotificationVariant.LUMO_CONTRAST);
+            case FAILED -> {
+                showNotification("Error archiving workflow: " + progress.message(), NotificationVariant.LUMO_ERROR);
+                logPanel.log("Error archiving workflow: " + progress.message());
+            }
+        }
+    }
+
+    private void showNotification(String text, NotificationVariant variant) {
+        Notification notification = Notification.show(text);
+        notification.addThemeVariants(variant);
+        notification.setDuration(5000);
+    }
 }
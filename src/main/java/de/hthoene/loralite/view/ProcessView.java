@@ -1,8 +1,13 @@
 package de.hthoene.loralite.view;
 
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.Unit;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Image;
 import com.vaadin.flow.component.html.Span;
@@ -12,11 +17,20 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.server.streams.DownloadHandler;
 import com.vaadin.flow.server.streams.DownloadResponse;
+import com.vaadin.flow.shared.Registration;
 import de.hthoene.loralite.aitoolkit.AiToolkitService;
+import de.hthoene.loralite.aitoolkit.OutputWatcher;
+import de.hthoene.loralite.aitoolkit.TrainingJob;
+import de.hthoene.loralite.aitoolkit.TrainingMetrics;
+import de.hthoene.loralite.component.LineChart;
 import de.hthoene.loralite.component.LogPanel;
+import de.hthoene.loralite.util.EventBroadcaster;
+import de.hthoene.loralite.util.GpuHistory;
 import de.hthoene.loralite.util.GpuInfo;
 import de.hthoene.loralite.util.GpuMonitor;
 import de.hthoene.loralite.util.GpuStats;
+import de.hthoene.loralite.util.ThumbnailService;
+import de.hthoene.loralite.util.WorkflowEvent;
 import de.hthoene.loralite.util.WorkspaceProperties;
 import lombok.extern.slf4j.Slf4j;
 
@@ -24,86 +38,187 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 @Slf4j
 public class ProcessView extends VerticalLayout {
 
-    private static final String[] ALLOWED_IMAGE_FILE_TYPES = { "png", "jpg", "jpeg", "webp" };
+    private static final DateTimeFormatter JOB_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final int LOSS_CURVE_POINTS = 200;
 
     private final GpuMonitor gpuMonitor;
-    private final Path outputDirectory;
     private final LogPanel logPanel;
     private final AiToolkitService aiToolkitService;
+    private final EventBroadcaster eventBroadcaster;
+    private final OutputWatcher outputWatcher;
+    private final ThumbnailService thumbnailService;
 
     private final FlexLayout samplesLayout = new FlexLayout();
     private final FlexLayout safetensorsLayout = new FlexLayout();
+    private final Grid<TrainingJob> jobGrid = new Grid<>();
 
-    private final ProgressBar gpuUtilBar = new ProgressBar(0, 100, 0);
-    private final Span gpuUtilLabel = new Span("GPU Util: -");
+    private final VerticalLayout gpuDevicesLayout = new VerticalLayout();
+    private final List<GpuDeviceRow> gpuDeviceRows = new ArrayList<>();
 
-    private final ProgressBar gpuMemBar = new ProgressBar(0, 100, 0);
-    private final Span gpuMemLabel = new Span("GPU Mem: -");
+    private final VerticalLayout trainingLayout = new VerticalLayout();
+    private final ProgressBar trainingProgressBar = new ProgressBar(0, 1, 0);
+    private final Span trainingProgressLabel = new Span();
+    private final LineChart lossChart = new LineChart("Loss curve");
 
     private final Button cancelButton;
 
-    private int lastSampleCount = -1;
-    private int lastSafetensorsCount = -1;
+    private List<Path> lastSamples;
+    private List<Path> lastSafetensors;
+    private List<String> lastJobSignature = List.of();
+    private String metricsJobId;
 
-    public ProcessView(GpuMonitor gpuMonitor, LogPanel logPanel, WorkspaceProperties workspaceProperties, AiToolkitService aiToolkitService) {
+    private Registration eventRegistration;
+
+    public ProcessView(GpuMonitor gpuMonitor,
+                       LogPanel logPanel,
+                       WorkspaceProperties workspaceProperties,
+                       AiToolkitService aiToolkitService,
+                       EventBroadcaster eventBroadcaster,
+                       OutputWatcher outputWatcher,
+                       ThumbnailService thumbnailService) {
         this.gpuMonitor = gpuMonitor;
         this.logPanel = logPanel;
-        this.outputDirectory = workspaceProperties.getOutputPath().resolve("latest");
         this.aiToolkitService = aiToolkitService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.outputWatcher = outputWatcher;
+        this.thumbnailService = thumbnailService;
 
-        ensureOutputDirectoryExists();
+        ensureOutputDirectoryExists(workspaceProperties.getOutputPath().resolve("latest"));
 
         setPadding(true);
         setSpacing(true);
 
         cancelButton = new Button("Stop training", e -> {
-            aiToolkitService.cancelCurrent();
+            aiToolkitService.cancelAll();
             logPanel.log("Training cancelled by user.");
         });
 
         cancelButton.setEnabled(aiToolkitService.isRunning());
 
-        gpuUtilBar.setWidth(300, Unit.PIXELS);
-        gpuMemBar.setWidth(300, Unit.PIXELS);
-
-        gpuUtilLabel.setWidth("256px");
-        gpuMemLabel.setWidth("256px");
-
         setupFlexLayout(samplesLayout);
         setupFlexLayout(safetensorsLayout);
+        setupJobGrid();
+        setupTrainingLayout();
 
-        HorizontalLayout gpuUtilLayout = new HorizontalLayout(gpuUtilLabel, gpuUtilBar);
-        gpuUtilLayout.setWidthFull();
-        gpuUtilLayout.setAlignItems(Alignment.CENTER);
-
-        HorizontalLayout gpuMemLayout = new HorizontalLayout(gpuMemLabel, gpuMemBar);
-        gpuMemLayout.setWidthFull();
-        gpuMemLayout.setAlignItems(Alignment.CENTER);
+        gpuDevicesLayout.setWidth("520px");
+        gpuDevicesLayout.setPadding(false);
+        gpuDevicesLayout.setAlignItems(Alignment.START);
+        rebuildGpuRows(List.of(-1));
 
-        VerticalLayout gpuInner = new VerticalLayout(gpuUtilLayout, gpuMemLayout);
-        gpuInner.setWidth("520px");
-        gpuInner.setPadding(false);
-        gpuInner.setSpacing(false);
-        gpuInner.setAlignItems(Alignment.START);
-
-        VerticalLayout gpuOuter = new VerticalLayout(gpuInner);
+        VerticalLayout gpuOuter = new VerticalLayout(gpuDevicesLayout);
         gpuOuter.setWidthFull();
         gpuOuter.setPadding(false);
         gpuOuter.setAlignItems(Alignment.CENTER);
 
         setAlignItems(Alignment.CENTER);
 
-        add(cancelButton, gpuOuter, samplesLayout, safetensorsLayout);
+        Button clearFinishedButton = new Button("Clear finished jobs", e -> {
+            aiToolkitService.clearFinishedJobs();
+            refreshJobs();
+        });
+        clearFinishedButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_TERTIARY);
+
+        add(cancelButton, gpuOuter, trainingLayout, jobGrid, clearFinishedButton, samplesLayout, safetensorsLayout);
+    }
+
+    private void setupJobGrid() {
+        jobGrid.setWidthFull();
+        jobGrid.setAllRowsVisible(true);
+        jobGrid.addColumn(TrainingJob::getId).setHeader("Job").setAutoWidth(true);
+        jobGrid.addColumn(TrainingJob::getStatus).setHeader("Status").setAutoWidth(true);
+        jobGrid.addColumn(TrainingJob::getPriority).setHeader("Priority").setAutoWidth(true);
+        jobGrid.addColumn(job -> job.getGpuIndex() != null ? "GPU " + job.getGpuIndex() : "-")
+                .setHeader("Device")
+                .setAutoWidth(true);
+        jobGrid.addColumn(job -> job.getStartedAt() != null ? JOB_TIME_FORMATTER.format(job.getStartedAt()) : "-")
+                .setHeader("Started")
+                .setAutoWidth(true);
+        jobGrid.addComponentColumn(job -> {
+            if (job.getStatus() == TrainingJob.Status.RUNNING) {
+                Button stopButton = new Button("Stop", e -> {
+                    aiToolkitService.cancel(job.getId());
+                    logPanel.log("Training job cancelled by user: " + job.getId());
+                    refreshJobs();
+                });
+                stopButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_ERROR);
+                return stopButton;
+            }
+            if (!job.isQueued()) {
+                return new Span();
+            }
+            Button removeButton = new Button("Remove", e -> {
+                aiToolkitService.removeQueued(job.getId());
+                logPanel.log("Removed queued training job: " + job.getId());
+                refreshJobs();
+            });
+            removeButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_ERROR);
+            return removeButton;
+        });
+        jobGrid.asSingleSelect().addValueChangeListener(e -> refreshMetrics());
+    }
+
+    private void setupTrainingLayout() {
+        trainingLayout.setWidth("520px");
+        trainingLayout.setPadding(false);
+        trainingLayout.setSpacing(false);
+        trainingLayout.setVisible(false);
+
+        trainingProgressBar.setWidthFull();
+        trainingProgressLabel.getStyle().set("font-size", "var(--lumo-font-size-s)");
+        lossChart.setTitle("Training loss");
+
+        trainingLayout.add(trainingProgressLabel, trainingProgressBar, lossChart);
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        eventRegistration = eventBroadcaster.register(event -> ui.access(() -> onEvent(event)));
+
+        refreshJobs();
+        refreshGpuStats(gpuMonitor.getLastStats());
+        refreshOutput(outputWatcher.getSnapshot());
+        refreshMetrics();
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (eventRegistration != null) {
+            eventRegistration.remove();
+            eventRegistration = null;
+        }
+    }
+
+    private void onEvent(WorkflowEvent event) {
+        switch (event) {
+            case WorkflowEvent.GpuStatsUpdated gpuStatsUpdated -> refreshGpuStats(gpuStatsUpdated.stats());
+            case WorkflowEvent.OutputChanged outputChanged -> refreshOutput(outputChanged);
+            case WorkflowEvent.JobsChanged _ -> {
+                refreshJobs();
+                refreshMetrics();
+            }
+            case WorkflowEvent.MetricsUpdated metricsUpdated -> {
+                if (metricsUpdated.jobId().equals(metricsJobId)) {
+                    refreshMetrics();
+                }
+            }
+            case WorkflowEvent.ArchiveProgress _, WorkflowEvent.DatasetChanged _ -> {
+            }
+        }
     }
 
-    private void ensureOutputDirectoryExists() {
+    private void ensureOutputDirectoryExists(Path outputDirectory) {
         if (!outputDirectory.toFile().exists()) {
             try {
                 Files.createDirectories(outputDirectory);
@@ -125,106 +240,142 @@ public class ProcessView extends VerticalLayout {
         layout.setFlexWrap(FlexLayout.FlexWrap.WRAP);
     }
 
-    public void refresh() {
-        refreshSamples();
-        refreshSafetensors();
-        refreshGpuStats();
-        cancelButton.setEnabled(aiToolkitService.isRunning());
+    private void refreshOutput(WorkflowEvent.OutputChanged output) {
+        if (output == null) {
+            return;
+        }
+        refreshSamples(output.samples());
+        refreshSafetensors(output.checkpoints());
     }
 
-    private void refreshGpuStats() {
-        GpuStats stats = gpuMonitor.getLastStats();
-        if (stats == null || stats.getGpus() == null || stats.getGpus().isEmpty()) {
-            gpuUtilLabel.setText("GPU Util: -");
-            gpuMemLabel.setText("GPU Mem: -");
-            gpuUtilBar.setValue(0);
-            gpuMemBar.setValue(0);
+    private void refreshJobs() {
+        cancelButton.setEnabled(aiToolkitService.isRunning());
+
+        List<TrainingJob> jobs = aiToolkitService.getJobs();
+        List<String> signature = jobs.stream()
+                .map(job -> job.getId() + ":" + job.getStatus())
+                .toList();
+
+        if (signature.equals(lastJobSignature)) {
             return;
         }
 
-        GpuInfo gpu0 = stats.getGpus().getFirst();
-        double util = gpu0.getUtil();
-        long used = gpu0.getMem_used();
-        long total = gpu0.getMem_total();
+        lastJobSignature = signature;
+        jobGrid.setItems(jobs);
+        jobGrid.setVisible(!jobs.isEmpty());
+    }
 
-        gpuUtilLabel.setText("GPU Util: " + String.format("%.1f%%", util));
-        gpuMemLabel.setText("GPU Mem: " + used + " / " + total + " MB");
+    private void refreshMetrics() {
+        // a selected job keeps its curve on screen, otherwise follow the most recently started run
+        TrainingJob selected = jobGrid.asSingleSelect().getValue();
+        metricsJobId = selected != null && aiToolkitService.getMetrics(selected.getId()).isPresent()
+                ? selected.getId()
+                : aiToolkitService.getLatestMetricsJobId().orElse(null);
+        TrainingMetrics metrics = metricsJobId != null ? aiToolkitService.getMetrics(metricsJobId).orElse(null) : null;
+        TrainingMetrics.Snapshot snapshot = metrics != null ? metrics.snapshot() : null;
+        if (snapshot == null) {
+            trainingLayout.setVisible(false);
+            return;
+        }
+        trainingLayout.setVisible(true);
+
+        trainingProgressBar.setValue(snapshot.totalSteps() > 0
+                ? Math.clamp((double) snapshot.step() / snapshot.totalSteps(), 0, 1)
+                : 0);
+        trainingProgressLabel.setText(String.format(Locale.ROOT,
+                "Step %d / %d  -  %.2f it/s  -  loss %s  -  lr %s  -  ETA %s",
+                snapshot.step(), snapshot.totalSteps(), snapshot.iterationsPerSecond(),
+                formatMetric(snapshot.loss(), "%.4f"), formatMetric(snapshot.learningRate(), "%.1e"),
+                formatDuration(snapshot.eta())));
+
+        float[] loss = metrics.lossSeries(LOSS_CURVE_POINTS);
+        if (loss.length < 2) {
+            lossChart.clear();
+            return;
+        }
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (float value : loss) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        lossChart.setSeries(new float[][] { loss }, new String[] { "#ff9800" }, min, max > min ? max : min + 1);
+    }
 
-        double utilClamped = Math.clamp(util, 0, 100);
-        double memPercent = (total > 0) ? (used * 100.0 / total) : 0.0;
-        double memClamped = Math.clamp(memPercent, 0, 100);
+    private static String formatMetric(float value, String format) {
+        return Float.isNaN(value) ? "-" : String.format(Locale.ROOT, format, value);
+    }
 
-        gpuUtilBar.setValue(utilClamped);
-        gpuMemBar.setValue(memClamped);
+    private static String formatDuration(Duration duration) {
+        return String.format(Locale.ROOT, "%d:%02d:%02d",
+                duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart());
     }
 
-    private void refreshSamples() {
-        Path samplesDir = outputDirectory.resolve("samples");
-        File dir = samplesDir.toFile();
-        File[] files = (dir.exists() && dir.isDirectory()) ? dir.listFiles() : new File[0];
+    private void refreshGpuStats(GpuStats stats) {
+        if (stats == null || stats.getGpus() == null || stats.getGpus().isEmpty()) {
+            if (gpuDeviceRows.size() != 1 || gpuDeviceRows.getFirst().device != -1) {
+                rebuildGpuRows(List.of(-1));
+            }
+            gpuDeviceRows.getFirst().clear();
+            return;
+        }
 
-        if (files == null) {
-            files = new File[0];
+        List<Integer> devices = stats.getGpus().stream().map(GpuInfo::getIndex).toList();
+        List<Integer> currentDevices = gpuDeviceRows.stream().map(row -> row.device).toList();
+        if (!devices.equals(currentDevices)) {
+            rebuildGpuRows(devices);
         }
 
-        int currentCount = (int) Arrays.stream(files)
-                .filter(File::isFile)
-                .filter(this::isImageFile)
-                .count();
+        for (int i = 0; i < devices.size(); i++) {
+            GpuInfo gpu = stats.getGpus().get(i);
+            String jobId = aiToolkitService.getJobOnDevice(gpu.getIndex())
+                    .map(TrainingJob::getId)
+                    .orElse(null);
+            gpuDeviceRows.get(i).update(gpu, jobId);
+            gpuDeviceRows.get(i).updateHistory(gpuMonitor.getHistoryWindow(gpu.getIndex()));
+        }
+    }
 
-        boolean layoutHasContent = samplesLayout.getComponentCount() > 0;
+    private void rebuildGpuRows(List<Integer> devices) {
+        gpuDevicesLayout.removeAll();
+        gpuDeviceRows.clear();
+        for (int device : devices) {
+            GpuDeviceRow row = new GpuDeviceRow(device);
+            gpuDeviceRows.add(row);
+            gpuDevicesLayout.add(row);
+        }
+    }
 
-        if (currentCount == lastSampleCount && layoutHasContent) {
+    private void refreshSamples(List<Path> samples) {
+        if (samples.equals(lastSamples)) {
             return;
         }
-
-        lastSampleCount = currentCount;
+        lastSamples = samples;
 
         samplesLayout.removeAll();
 
-        if (currentCount == 0) {
+        if (samples.isEmpty()) {
             samplesLayout.add(new Span("No samples yet"));
             return;
         }
 
-        Arrays.stream(files)
-                .filter(File::isFile)
-                .filter(this::isImageFile)
-                .sorted(Comparator.comparingLong(File::lastModified).reversed())
-                .forEach(this::addSampleThumbnail);
+        samples.forEach(path -> addSampleThumbnail(path.toFile()));
     }
 
-    private void refreshSafetensors() {
-        File dir = outputDirectory.toFile();
-        File[] files = (dir.exists() && dir.isDirectory()) ? dir.listFiles() : new File[0];
-
-        if (files == null) {
-            files = new File[0];
-        }
-
-        File[] safetensors = Arrays.stream(files)
-                .filter(File::isFile)
-                .filter(f -> f.getName().toLowerCase(Locale.ROOT).endsWith(".safetensors"))
-                .sorted(Comparator.comparingLong(File::lastModified).reversed())
-                .toArray(File[]::new);
-
-        int currentCount = safetensors.length;
-        boolean layoutHasContent = safetensorsLayout.getComponentCount() > 0;
-
-        if (currentCount == lastSafetensorsCount && layoutHasContent) {
+    private void refreshSafetensors(List<Path> safetensors) {
+        if (safetensors.equals(lastSafetensors)) {
             return;
         }
-
-        lastSafetensorsCount = currentCount;
+        lastSafetensors = safetensors;
 
         safetensorsLayout.removeAll();
 
-        if (currentCount == 0) {
+        if (safetensors.isEmpty()) {
             safetensorsLayout.add(new Span("Nothing to download (.safetensors)"));
             return;
         }
 
-        Arrays.stream(safetensors).forEach(this::addSafetensorsDownload);
+        safetensors.forEach(path -> addSafetensorsDownload(path.toFile()));
     }
 
     private DownloadHandler createDownloadHandler(Path path, String filename, String mimeType) {
@@ -259,12 +410,6 @@ public class ProcessView extends VerticalLayout {
         safetensorsLayout.add(anchor);
     }
 
-    private boolean isImageFile(File f) {
-        String name = f.getName().toLowerCase(Locale.ROOT);
-        return Arrays.stream(ALLOWED_IMAGE_FILE_TYPES)
-                .anyMatch(ext -> name.endsWith("." + ext));
-    }
-
     private void addSampleThumbnail(File imageFile) {
         Path imagePath = imageFile.toPath();
 
@@ -281,7 +426,7 @@ public class ProcessView extends VerticalLayout {
 
         DownloadHandler handler = createDownloadHandler(imagePath, imageFile.getName(), mimeType);
 
-        Image img = new Image(handler, imageFile.getName());
+        Image img = new Image(thumbnailService.url(imagePath), imageFile.getName());
         img.setMaxHeight("15rem");
         img.getStyle().set("object-fit", "contain");
         img.getStyle().set("border-radius", "0.5rem");
@@ -306,4 +451,109 @@ public class ProcessView extends VerticalLayout {
         dialog.add(full);
         dialog.open();
     }
+
+    private static class GpuDeviceRow extends VerticalLayout {
+        private final int device;
+
+        private final Span deviceLabel = new Span();
+
+        private final ProgressBar gpuUtilBar = new ProgressBar(0, 100, 0);
+        private final Span gpuUtilLabel = new Span("GPU Util: -");
+
+        private final ProgressBar gpuMemBar = new ProgressBar(0, 100, 0);
+        private final Span gpuMemLabel = new Span("GPU Mem: -");
+
+        private final LineChart historyChart = new LineChart("GPU history");
+        private final Span historySummary = new Span();
+
+        private GpuHistory.Window shownWindow;
+
+        private GpuDeviceRow(int device) {
+            this.device = device;
+
+            setPadding(false);
+            setSpacing(false);
+            setAlignItems(Alignment.START);
+
+            deviceLabel.getStyle().set("font-weight", "600");
+            deviceLabel.setVisible(device >= 0);
+
+            gpuUtilBar.setWidth(300, Unit.PIXELS);
+            gpuMemBar.setWidth(300, Unit.PIXELS);
+
+            gpuUtilLabel.setWidth("256px");
+            gpuMemLabel.setWidth("256px");
+
+            HorizontalLayout gpuUtilLayout = new HorizontalLayout(gpuUtilLabel, gpuUtilBar);
+            gpuUtilLayout.setWidthFull();
+            gpuUtilLayout.setAlignItems(Alignment.CENTER);
+
+            HorizontalLayout gpuMemLayout = new HorizontalLayout(gpuMemLabel, gpuMemBar);
+            gpuMemLayout.setWidthFull();
+            gpuMemLayout.setAlignItems(Alignment.CENTER);
+
+            historyChart.setTitle("Last " + GpuMonitor.HISTORY_WINDOW.toMinutes() + " minutes: utilisation (green) and memory (blue)");
+            historySummary.getStyle().set("font-size", "var(--lumo-font-size-s)");
+            historySummary.getStyle().set("color", "var(--lumo-secondary-text-color)");
+
+            VerticalLayout historyLayout = new VerticalLayout(historyChart, historySummary);
+            historyLayout.setPadding(false);
+            historyLayout.setSpacing(false);
+            historyLayout.setVisible(device >= 0);
+
+            add(deviceLabel, gpuUtilLayout, gpuMemLayout, historyLayout);
+        }
+
+        private void updateHistory(GpuHistory.Window window) {
+            if (window == null || window == shownWindow) {
+                return;
+            }
+            shownWindow = window;
+
+            GpuHistory.Series series = window.series();
+            float[] memPercent = new float[series.memUsed().length];
+            for (int i = 0; i < memPercent.length; i++) {
+                memPercent[i] = series.memTotal() > 0 ? series.memUsed()[i] * 100f / series.memTotal() : 0f;
+            }
+            historyChart.setSeries(
+                    new float[][] { series.util(), memPercent },
+                    new String[] { "#4caf50", "#2196f3" },
+                    0, 100
+            );
+
+            GpuHistory.Summary summary = window.summary();
+            if (summary.samples() == 0) {
+                historySummary.setText("");
+                return;
+            }
+            historySummary.setText(String.format(Locale.ROOT,
+                    "Util min/avg/p95: %.0f / %.0f / %.0f %%  -  Mem p95: %.0f MB",
+                    summary.util().min(), summary.util().avg(), summary.util().p95(), summary.memUsed().p95()));
+        }
+
+        private void clear() {
+            gpuUtilLabel.setText("GPU Util: -");
+            gpuMemLabel.setText("GPU Mem: -");
+            gpuUtilBar.setValue(0);
+            gpuMemBar.setValue(0);
+        }
+
+        private void update(GpuInfo gpu, String jobId) {
+            double util = gpu.getUtil();
+            long used = gpu.getMem_used();
+            long total = gpu.getMem_total();
+
+            deviceLabel.setText("GPU " + device + (gpu.getName() != null ? " (" + gpu.getName() + ")" : "")
+                    + (jobId != null ? " - " + jobId : " - idle"));
+            gpuUtilLabel.setText("GPU Util: " + String.format("%.1f%%", util));
+            gpuMemLabel.setText("GPU Mem: " + used + " / " + total + " MB");
+
+            double utilClamped = Math.clamp(util, 0, 100);
+            double memPercent = (total > 0) ? (used * 100.0 / total) : 0.0;
+            double memClamped = Math.clamp(memPercent, 0, 100);
+
+            gpuUtilBar.setValue(utilClamped);
+            gpuMemBar.setValue(memClamped);
+        }
+    }
 }
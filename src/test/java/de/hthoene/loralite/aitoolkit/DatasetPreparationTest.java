@@ -0,0 +1,118 @@
+package de.hthoene.loralite.aitoolkit;
+
+import de.hthoene.loralite.util.DatasetIndex;
+import de.hthoene.loralite.util.EventBroadcaster;
+import de.hthoene.loralite.util.ThumbnailProperties;
+import de.hthoene.loralite.util.ThumbnailService;
+import de.hthoene.loralite.util.WorkspaceProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetPreparationTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void discardsOnlyTheLatentOfAnEditedImage() throws Exception {
+        DatasetPreparation preparation = preparation();
+        image("a.png", Color.RED);
+        image("b.png", Color.BLUE);
+        train(preparation, "a", "b");
+
+        image("b.png", Color.GREEN);
+        assertEquals("Latent cache: 1 up to date, 0 restored, 1 stale discarded", warm(preparation));
+        assertTrue(Files.exists(latent("a")));
+        assertFalse(Files.exists(latent("b")));
+    }
+
+    @Test
+    void restoresRetainedLatentsPerImage() throws Exception {
+        DatasetPreparation preparation = preparation();
+        image("a.png", Color.RED);
+        image("b.png", Color.BLUE);
+        train(preparation, "a", "b");
+
+        preparation.removeLatentCaches(root.resolve("dataset"));
+        image("b.png", Color.GREEN);
+
+        assertEquals("Latent cache: 0 up to date, 1 restored, 0 stale discarded", warm(preparation));
+        assertTrue(Files.exists(latent("a")));
+        assertFalse(Files.exists(latent("b")));
+    }
+
+    @Test
+    void discardsLatentsOfRunsThatDidNotFinish() throws Exception {
+        DatasetPreparation preparation = preparation();
+        image("a.png", Color.RED);
+        warm(preparation);
+        Files.createDirectories(latent("a").getParent());
+        Files.writeString(latent("a"), "partial");
+
+        assertEquals("Latent cache: 0 up to date, 0 restored, 1 stale discarded", warm(preparation));
+    }
+
+    private void train(DatasetPreparation preparation, String... stems) throws IOException {
+        List<DatasetPreparation.PreparedDataset> prepared = preparation.prepare(config());
+        for (String stem : stems) {
+            Files.createDirectories(latent(stem).getParent());
+            Files.writeString(latent(stem), "latent of " + stem);
+        }
+        preparation.retain(prepared);
+    }
+
+    private String warm(DatasetPreparation preparation) throws IOException {
+        return preparation.prepare(config()).getFirst().report().get(1);
+    }
+
+    private JobConfiguration config() {
+        JobConfiguration.Dataset dataset = JobConfiguration.Dataset.builder()
+                .folderPath(root.resolve("dataset").toString())
+                .cacheLatentsToDisk(true)
+                .resolution(List.of(512))
+                .build();
+        JobConfiguration.ProcessItem process = JobConfiguration.ProcessItem.builder()
+                .model(JobConfiguration.Model.builder().nameOrPath("black-forest-labs/FLUX.1-dev").build())
+                .datasets(List.of(dataset))
+                .build();
+        return JobConfiguration.builder()
+                .config(JobConfiguration.Config.builder().process(List.of(process)).build())
+                .build();
+    }
+
+    private Path latent(String stem) {
+        return root.resolve("dataset/_latent_cache").resolve(stem + "_Xq3-_a9.safetensors");
+    }
+
+    private void image(String name, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 8, 8);
+        graphics.dispose();
+        Files.createDirectories(root.resolve("dataset"));
+        ImageIO.write(image, "png", root.resolve("dataset").resolve(name).toFile());
+    }
+
+    private DatasetPreparation preparation() {
+        WorkspaceProperties workspace = new WorkspaceProperties();
+        workspace.setDataset(root.resolve("workspace-dataset").toString());
+        workspace.setLatentCache(root.resolve("latents").toString());
+        ThumbnailProperties thumbnails = new ThumbnailProperties();
+        DatasetIndex index = new DatasetIndex(workspace, new EventBroadcaster(), new ThumbnailService(thumbnails));
+        return new DatasetPreparation(workspace, index);
+    }
+}
@@ -0,0 +1,62 @@
+package de.hthoene.loralite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BkTreeTest {
+
+    @Test
+    void searchMatchesBruteForce() {
+        Random random = new Random(42);
+        long[] hashes = new long[2000];
+        BkTree<Integer> tree = new BkTree<>();
+        for (int i = 0; i < hashes.length; i++) {
+            // every fourth hash is a near copy of an earlier one, so searches have something to find
+            hashes[i] = i > 0 && i % 4 == 0
+                    ? flipBits(hashes[random.nextInt(i)], random.nextInt(8), random)
+                    : random.nextLong();
+            tree.add(hashes[i], i);
+        }
+
+        for (int maxDistance : new int[] { 0, 3, 6, 12 }) {
+            for (int query = 0; query < 200; query++) {
+                long hash = hashes[random.nextInt(hashes.length)];
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < hashes.length; i++) {
+                    if (PerceptualHash.distance(hash, hashes[i]) <= maxDistance) {
+                        expected.add(i);
+                    }
+                }
+
+                List<Integer> found = tree.search(hash, maxDistance).stream().sorted().toList();
+                assertEquals(expected, found);
+                found.forEach(i -> assertTrue(PerceptualHash.distance(hash, hashes[i]) <= maxDistance));
+            }
+        }
+        assertEquals(hashes.length, tree.size());
+    }
+
+    @Test
+    void keepsEveryValueOfIdenticalHashes() {
+        BkTree<String> tree = new BkTree<>();
+        tree.add(7L, "a");
+        tree.add(7L, "b");
+        tree.add(~7L, "c");
+
+        assertEquals(List.of("a", "b"), tree.search(7L, 0));
+    }
+
+    private static long flipBits(long hash, int bits, Random random) {
+        long flipped = hash;
+        while (PerceptualHash.distance(flipped, hash) < bits) {
+            flipped ^= 1L << random.nextInt(Long.SIZE);
+        }
+        return flipped;
+    }
+}
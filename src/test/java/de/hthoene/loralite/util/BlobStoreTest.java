@@ -0,0 +1,64 @@
+package de.hthoene.loralite.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void linksIdenticalFilesToOneBlob() throws Exception {
+        BlobStore store = new BlobStore(root.resolve(".blobs"));
+        Path first = write("a/image.png", "same content");
+        Path second = write("b/image.png", "same content");
+
+        assertFalse(store.deduplicate(first, BlobStore.hash(first)));
+        assertTrue(store.deduplicate(second, BlobStore.hash(second)));
+
+        assertTrue(Files.isSameFile(first, second));
+        assertEquals("same content", Files.readString(second));
+    }
+
+    @Test
+    void recognisesLinkedFilesWithoutHashing() throws Exception {
+        Path first = write("a/model.safetensors", "weights");
+        String hash = BlobStore.hash(first);
+        new BlobStore(root.resolve(".blobs")).deduplicate(first, hash);
+
+        // a fresh store only knows the blob folder, as after a restart
+        BlobStore store = new BlobStore(root.resolve(".blobs"));
+        assertEquals(Optional.of(hash), store.knownHash(first));
+        assertEquals(Optional.empty(), store.knownHash(write("b/model.safetensors", "weights")));
+    }
+
+    @Test
+    void collectsOnlyUnreferencedBlobs() throws Exception {
+        BlobStore store = new BlobStore(root.resolve(".blobs"));
+        Path kept = write("a/kept.txt", "kept");
+        Path removed = write("b/removed.txt", "removed");
+        store.deduplicate(kept, BlobStore.hash(kept));
+        store.deduplicate(removed, BlobStore.hash(removed));
+        Files.delete(removed);
+
+        assertEquals("removed".length(), store.collectGarbage());
+        assertTrue(Files.exists(store.blobPath(BlobStore.hash(kept))));
+        assertEquals(0, store.collectGarbage());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+}
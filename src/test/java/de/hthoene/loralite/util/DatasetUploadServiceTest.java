@@ -0,0 +1,91 @@
+package de.hthoene.loralite.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetUploadServiceTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void importsCaptionsFromTheImportsFolder() throws Exception {
+        DatasetUploadService service = service();
+        write("imports/set/a.txt", "a photo of sks");
+
+        List<CompletableFuture<DatasetUploadService.UploadResult>> results = service.ingestFolder("set", null);
+
+        assertEquals(1, results.size());
+        assertEquals(DatasetUploadService.Status.ACCEPTED, results.getFirst().get().status());
+        assertEquals("a photo of sks", Files.readString(root.resolve("dataset/latest/a.txt")));
+    }
+
+    @Test
+    void refusesFoldersOutsideTheImportsFolder() throws Exception {
+        DatasetUploadService service = service();
+        write("secrets/key.txt", "secret");
+        Files.createDirectories(root.resolve("imports"));
+        Files.createSymbolicLink(root.resolve("imports/escape"), root.resolve("secrets"));
+
+        assertThrows(IOException.class, () -> service.ingestFolder(root.resolve("secrets").toString(), null));
+        assertThrows(IOException.class, () -> service.ingestFolder("../secrets", null));
+        assertThrows(IOException.class, () -> service.ingestFolder("escape", null));
+        assertFalse(Files.exists(root.resolve("dataset/latest/key.txt")));
+    }
+
+    @Test
+    void skipsFilesLinkingOutsideTheImportsFolder() throws Exception {
+        DatasetUploadService service = service();
+        write("secrets/key.txt", "secret");
+        write("imports/set/a.txt", "caption");
+        Files.createSymbolicLink(root.resolve("imports/set/key.txt"), root.resolve("secrets/key.txt"));
+
+        List<CompletableFuture<DatasetUploadService.UploadResult>> results = service.ingestFolder("set", null);
+
+        assertEquals(1, results.size());
+        assertFalse(Files.exists(root.resolve("dataset/latest/key.txt")));
+    }
+
+    @Test
+    void storesGzippedFileUnderItsInnerName() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("a photo of sks".getBytes(StandardCharsets.UTF_8));
+        }
+
+        DatasetUploadService.UploadResult result = service()
+                .upload("a.txt.gz", new ByteArrayInputStream(compressed.toByteArray()), null)
+                .get();
+
+        assertEquals("a.txt", result.fileName());
+        assertTrue(Files.exists(root.resolve("dataset/latest/a.txt")));
+    }
+
+    private DatasetUploadService service() {
+        WorkspaceProperties properties = new WorkspaceProperties();
+        properties.setDataset(root.resolve("dataset").toString());
+        properties.setImports(root.resolve("imports").toString());
+        return new DatasetUploadService(properties);
+    }
+
+    private void write(String name, String content) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,40 @@
+package de.hthoene.loralite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DuplicateFinderTest {
+
+    @Test
+    void chainsNearDuplicatesIntoOneCluster() {
+        long first = 0L;
+        long second = 0b1111L;
+        long third = 0b1111_1111L;
+
+        List<List<Integer>> clusters = DuplicateFinder.groupByDistance(List.of(
+                OptionalLong.of(first),
+                OptionalLong.of(~0L),
+                OptionalLong.of(second),
+                OptionalLong.empty(),
+                OptionalLong.of(third)), 6);
+
+        // first and third are 8 bits apart, but both are within 4 bits of second
+        assertEquals(List.of(List.of(0, 2, 4)), clusters);
+    }
+
+    @Test
+    void ordersClustersBySize() {
+        List<List<Integer>> clusters = DuplicateFinder.groupByDistance(List.of(
+                OptionalLong.of(0L),
+                OptionalLong.of(~0L),
+                OptionalLong.of(~0L ^ 1),
+                OptionalLong.of(~0L ^ 2),
+                OptionalLong.of(1L)), 2);
+
+        assertEquals(List.of(List.of(1, 2, 3), List.of(0, 4)), clusters);
+    }
+}
@@ -0,0 +1,58 @@
+package de.hthoene.loralite.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageEditServiceTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void cropKeepsPreviousVersionUntilRestored() throws Exception {
+        ImageEditService service = service();
+        Path image = image("a.png", 200, 100);
+
+        assertEquals("100x50", service.crop(image, new ImageEditService.CropRegion(0.25, 0.25, 0.5, 0.5), null));
+        assertTrue(service.hasBackup(image));
+
+        service.restore(image);
+        assertEquals(200, ImageIO.read(image.toFile()).getWidth());
+        assertFalse(service.hasBackup(image));
+    }
+
+    @Test
+    void deletedImageLeavesNoVersionsBehind() throws Exception {
+        ImageEditService service = service();
+        Path image = image("a.png", 200, 100);
+        service.crop(image, new ImageEditService.CropRegion(0, 0, 0.5, 1), null);
+
+        Files.delete(image);
+        service.discardBackups(image);
+
+        Path reuploaded = image("a.png", 64, 64);
+        assertFalse(service.hasBackup(reuploaded));
+    }
+
+    private ImageEditService service() {
+        WorkspaceProperties properties = new WorkspaceProperties();
+        properties.setBackups(root.resolve("backups").toString());
+        return new ImageEditService(properties);
+    }
+
+    private Path image(String name, int width, int height) throws Exception {
+        Path file = root.resolve("dataset").resolve(name);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,74 @@
+package de.hthoene.loralite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerceptualHashTest {
+
+    @Test
+    void identicalImagesHaveDistanceZero() {
+        assertEquals(0, PerceptualHash.distance(
+                PerceptualHash.dHash(scene(512, 384, 0)),
+                PerceptualHash.dHash(scene(512, 384, 0))));
+    }
+
+    @Test
+    void resizedImageStaysClose() {
+        long original = PerceptualHash.dHash(scene(1024, 768, 0));
+        long resized = PerceptualHash.dHash(scene(256, 192, 0));
+
+        assertTrue(PerceptualHash.distance(original, resized) <= DuplicateFinder.DEFAULT_MAX_DISTANCE);
+    }
+
+    @Test
+    void slightlyShiftedImageStaysClose() {
+        long original = PerceptualHash.dHash(scene(512, 384, 0));
+        long shifted = PerceptualHash.dHash(scene(512, 384, 4));
+
+        assertTrue(PerceptualHash.distance(original, shifted) <= DuplicateFinder.DEFAULT_MAX_DISTANCE);
+    }
+
+    @Test
+    void differentImagesAreFarApart() {
+        long scene = PerceptualHash.dHash(scene(512, 384, 0));
+        long mirrored = PerceptualHash.dHash(mirror(scene(512, 384, 0)));
+
+        assertTrue(PerceptualHash.distance(scene, mirrored) > DuplicateFinder.DEFAULT_MAX_DISTANCE);
+    }
+
+    private static BufferedImage scene(int width, int height, int shift) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.scale(width / 512.0, height / 384.0);
+            graphics.translate(shift, 0);
+            graphics.setPaint(new GradientPaint(0, 0, Color.WHITE, 512, 0, Color.DARK_GRAY));
+            graphics.fillRect(-16, 0, 544, 384);
+            graphics.setColor(Color.BLACK);
+            graphics.fillOval(60, 80, 160, 160);
+            graphics.setColor(Color.LIGHT_GRAY);
+            graphics.fillRect(300, 40, 120, 280);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static BufferedImage mirror(BufferedImage source) {
+        BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.drawImage(source, source.getWidth(), 0, -source.getWidth(), source.getHeight(), null);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+}
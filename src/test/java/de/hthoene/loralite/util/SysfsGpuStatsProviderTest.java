@@ -0,0 +1,119 @@
+package de.hthoene.loralite.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SysfsGpuStatsProviderTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void numbersAmdCardsInPciBusOrder() throws Exception {
+        platformCard("card0");
+        amdCard("card1", "0000:0a:00.0", 2L << 30, 8L << 30);
+        amdCard("card2", "0000:03:00.0", 1L << 30, 16L << 30);
+
+        List<GpuInfo> gpus = sample(provider());
+
+        assertEquals(2, gpus.size());
+        assertEquals(0, gpus.get(0).getIndex());
+        assertEquals("card2", gpus.get(0).getName());
+        assertEquals(16 * 1024, gpus.get(0).getMem_total());
+        assertEquals(1, gpus.get(1).getIndex());
+        assertEquals("card1", gpus.get(1).getName());
+        assertEquals(2 * 1024, gpus.get(1).getMem_used());
+    }
+
+    @Test
+    void keepsOrdinalsOfCardsWithoutMemoryInfo() throws Exception {
+        amdCard("card1", "0000:03:00.0", 1L << 30, 8L << 30);
+        Path incomplete = amdCard("card2", "0000:05:00.0", 1L << 30, 8L << 30);
+        Files.delete(incomplete.resolve("mem_info_vram_used"));
+        amdCard("card3", "0000:07:00.0", 1L << 30, 8L << 30);
+
+        List<GpuInfo> gpus = sample(provider());
+
+        assertEquals(List.of(0, 2), gpus.stream().map(GpuInfo::getIndex).toList());
+        assertEquals(List.of("card1", "card3"), gpus.stream().map(GpuInfo::getName).toList());
+    }
+
+    @Test
+    void ignoresOtherVendors() throws Exception {
+        Path nvidia = pciDevice("0000:01:00.0", "0x10de");
+        writeMemoryInfo(nvidia, 1L << 30, 8L << 30);
+        link("card0", nvidia);
+
+        assertFalse(provider().isAvailable());
+    }
+
+    @Test
+    void stepsAsideInAutoModeWhenNvidiaDriverIsLoaded() throws Exception {
+        amdCard("card0", "0000:03:00.0", 1L << 30, 8L << 30);
+        SysfsGpuStatsProvider provider = provider();
+        assertTrue(provider.isPreferredForAuto());
+
+        Files.createDirectories(root.resolve("nvidia/gpus/0000:01:00.0"));
+        assertFalse(provider.isPreferredForAuto());
+    }
+
+    private SysfsGpuStatsProvider provider() {
+        GpuMonitorProperties properties = new GpuMonitorProperties();
+        properties.setSysfsDrm(root.resolve("drm").toString());
+        properties.setNvidiaProc(root.resolve("nvidia").toString());
+        properties.setSampleIntervalMs(60_000);
+        return new SysfsGpuStatsProvider(properties);
+    }
+
+    private static List<GpuInfo> sample(SysfsGpuStatsProvider provider) throws Exception {
+        CompletableFuture<GpuStats> first = new CompletableFuture<>();
+        provider.start(first::complete);
+        try {
+            GpuStats stats = first.get(5, TimeUnit.SECONDS);
+            assertEquals("amd", stats.getBackend());
+            return stats.getGpus();
+        } finally {
+            provider.stop();
+        }
+    }
+
+    private Path amdCard(String name, String pciAddress, long used, long total) throws IOException {
+        Path device = pciDevice(pciAddress, "0x1002");
+        writeMemoryInfo(device, used, total);
+        link(name, device);
+        return device;
+    }
+
+    private void platformCard(String name) throws IOException {
+        Path device = Files.createDirectories(root.resolve("devices/platform/simple-framebuffer.0"));
+        link(name, device);
+    }
+
+    private Path pciDevice(String pciAddress, String vendor) throws IOException {
+        Path device = Files.createDirectories(root.resolve("devices/pci0000:00").resolve(pciAddress));
+        Files.writeString(device.resolve("vendor"), vendor + "\n");
+        return device;
+    }
+
+    private static void writeMemoryInfo(Path device, long used, long total) throws IOException {
+        Files.writeString(device.resolve("gpu_busy_percent"), "12\n");
+        Files.writeString(device.resolve("mem_info_vram_used"), used + "\n");
+        Files.writeString(device.resolve("mem_info_vram_total"), total + "\n");
+    }
+
+    private void link(String card, Path device) throws IOException {
+        Path cardFolder = Files.createDirectories(root.resolve("drm").resolve(card));
+        Files.createSymbolicLink(cardFolder.resolve("device"), device);
+    }
+}